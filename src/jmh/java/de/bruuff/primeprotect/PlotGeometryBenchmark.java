@@ -0,0 +1,134 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+//Geometry of a single plot: a comb with 45 degree teeth, so every kind of border line the claim command allows shows up.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PlotGeometryBenchmark {
+
+    @Param({"16", "256"})
+    public int vertexCount;
+
+    private List<PlotPoint> vertices;
+    private Plot plot;
+    private String verticesString;
+    private byte[] vertexData;
+    private PlotLine[] lines;
+    private int[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        int teeth = Math.max(1, (vertexCount - 3) / 2), tooth = 8, height = 64;
+        vertices = new ArrayList<>();
+        vertices.add(new PlotPoint(0, 0));
+        vertices.add(new PlotPoint(2 * tooth * teeth, 0));
+        for(int i = teeth; i >= 1; i--){
+            vertices.add(new PlotPoint(2 * tooth * i, height));
+            vertices.add(new PlotPoint(2 * tooth * i - tooth, height + tooth));
+        }
+        vertices.add(new PlotPoint(0, height));
+
+        plot = new Plot(1, Optional.empty(), SyntheticServer.createWorld("world"), vertices, new PlotPoint(0, 0), 1, Optional.empty(),
+                0, 0, 2 * tooth * teeth, height + tooth);
+        verticesString = plot.getVerticesString();
+        vertexData = VertexCodec.encode(vertices);
+        lines = Plot.getBorderLines(vertices).toArray(new PlotLine[0]);
+
+        Random random = new Random(42);
+        queries = new int[2048];
+        for(int i = 0; i < queries.length; i += 2){
+            queries[i] = random.nextInt(2 * tooth * teeth + 1);
+            queries[i + 1] = random.nextInt(height + tooth + 1);
+        }
+    }
+
+    @Benchmark
+    public boolean contains(){
+        int i = next++ & (queries.length / 2 - 1);
+        return plot.contains(queries[2 * i], queries[2 * i + 1]);
+    }
+
+    @Benchmark
+    public Object compileShape(){
+        return new PlotShape(vertices);
+    }
+
+    //The border blocks are what update() used to rebuild on every vertex.
+    @Benchmark
+    public Object border(){
+        return new PlotBorder(vertices, true);
+    }
+
+    @Benchmark
+    public Object calcCentroid(){
+        return plot.calcCentroid();
+    }
+
+    @Benchmark
+    public String getVerticesString(){
+        return plot.getVerticesString();
+    }
+
+    @Benchmark
+    public List<PlotPoint> getVerticesList(){
+        return Plot.getVerticesList(verticesString);
+    }
+
+    @Benchmark
+    public int[] decodeVertexCoordinates(){
+        return VertexCodec.decodeCoordinates(vertexData);
+    }
+
+    @Benchmark
+    public List<PlotPoint> decodeVertices(){
+        return VertexCodec.decode(vertexData);
+    }
+
+    //Replaces the old PlotLine.intersection, one line against the whole border.
+    @Benchmark
+    public int crosses(){
+        PlotLine line = lines[next++ % lines.length];
+        int crossings = 0;
+        for(PlotLine other : lines){
+            if(other.crosses(line)) crossings++;
+        }
+        return crossings;
+    }
+
+    @Benchmark
+    public boolean isValidShape(){
+        return PlotValidator.isValidShape(vertices, Collections.emptyList());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import com.flowpowered.math.vector.Vector3d;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Position lookups against nested synthetic plots, from memory and straight from the database.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PlotLookupBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int plotCount;
+
+    @Param({"index", "descent", "database"})
+    public String mode;
+
+    private SyntheticServer server;
+    private PlotPropertyService service;
+    private Vector3d[] positions;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new SyntheticServer(Files.createTempDirectory("primeprotect-jmh"));
+        PlotPropertyService writer = new PlotPropertyService(server.createPlugin("index"));
+        writer.awaitWarmup(1, TimeUnit.MINUTES);
+        int size = SyntheticServer.claimNestedPlots(writer, server.world, plotCount);
+        writer.shutdown();
+
+        service = new PlotPropertyService(server.createPlugin(mode.equals("database") ? "index" : mode));
+        service.awaitWarmup(1, TimeUnit.MINUTES);
+        if(mode.equals("database")){
+            //Same fallback the service uses while it is still loading.
+            Field plotIndex = PlotPropertyService.class.getDeclaredField("plotIndex");
+            plotIndex.setAccessible(true);
+            plotIndex.set(service, null);
+        }
+
+        Random random = new Random(42);
+        positions = new Vector3d[4096];
+        for(int i = 0; i < positions.length; i++){
+            positions[i] = new Vector3d(random.nextInt(size), 64, random.nextInt(size));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        service.shutdown();
+        server.delete();
+    }
+
+    @Benchmark
+    public Plot getPlot(){
+        Vector3d position = positions[next++ & (positions.length - 1)];
+        return service.getPlot(position, server.world);
+    }
+}
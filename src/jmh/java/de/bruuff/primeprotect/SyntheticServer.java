@@ -0,0 +1,195 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import ninja.leaping.configurate.commented.SimpleCommentedConfigurationNode;
+import org.h2.jdbcx.JdbcDataSource;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.Game;
+import org.spongepowered.api.GameRegistry;
+import org.spongepowered.api.Server;
+import org.spongepowered.api.command.CommandCallable;
+import org.spongepowered.api.command.CommandManager;
+import org.spongepowered.api.scheduler.Scheduler;
+import org.spongepowered.api.service.ServiceManager;
+import org.spongepowered.api.service.sql.SqlService;
+import org.spongepowered.api.world.World;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+//Just enough of a Sponge server to run the plot service outside of the game: one world and an H2 database file.
+//Registered services and commands are kept, everything else is answered with empty values.
+public class SyntheticServer {
+
+    public final World world = createWorld("world");
+    public final Game game;
+    public final Map<Class<?>, Object> services = new ConcurrentHashMap<>();
+    public final Map<String, CommandCallable> commands = new ConcurrentHashMap<>();
+    private final Path directory;
+
+    public SyntheticServer(Path directory) {
+        this.directory = directory;
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:" + directory.resolve("data").toAbsolutePath());
+        services.put(SqlService.class, stub(SqlService.class, (method, args) -> dataSource));
+        ServiceManager serviceManager = stub(ServiceManager.class, (method, args) -> {
+            switch (method.getName()){
+                case "setProvider": services.put((Class<?>) args[1], args[2]); break;
+                case "provide": return Optional.ofNullable(services.get(args[0]));
+            }
+            return null;
+        });
+        CommandManager commandManager = stub(CommandManager.class, (method, args) -> {
+            if(method.getName().equals("register")){
+                for(String alias : (String[]) args[2]) commands.put(alias, (CommandCallable) args[1]);
+            }
+            return null;
+        });
+        GameRegistry registry = deepStub(GameRegistry.class);
+        Scheduler scheduler = deepStub(Scheduler.class);
+        Server server = stub(Server.class, (method, args) -> {
+            switch (method.getName()){
+                case "getWorld": return Optional.of(world);
+                case "getWorlds": return Collections.singletonList(world);
+                case "getOnlinePlayers": return getOnlinePlayers();
+            }
+            return null;
+        });
+        game = stub(Game.class, (method, args) -> {
+            switch (method.getName()){
+                case "getServiceManager": return serviceManager;
+                case "getServer": return server;
+                case "getCommandManager": return commandManager;
+                case "getRegistry": return registry;
+                case "getScheduler": return scheduler;
+            }
+            return null;
+        });
+    }
+
+    //Overridden by harnesses with players.
+    protected Collection<?> getOnlinePlayers(){
+        return Collections.emptyList();
+    }
+
+    public PrimeProtect createPlugin(String lookupMode){
+        PrimeProtect plugin = new PrimeProtect();
+        plugin.game = game;
+        plugin.logger = LoggerFactory.getLogger("PrimeProtect");
+        plugin.mainConfig = SimpleCommentedConfigurationNode.root();
+        plugin.mainConfig.getNode("plots", "lookup").setValue(lookupMode);
+        return plugin;
+    }
+
+    public void delete() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        Files.walk(directory).forEach(paths::add);
+        Collections.reverse(paths);
+        for(Path path : paths) Files.deleteIfExists(path);
+    }
+
+    //Claims count nested plots: cities of 1000 blocks, 4 districts in each and 4 lots in each district. Returns the covered size.
+    public static int claimNestedPlots(PropertyService service, World world, int count){
+        int cities = (count + 20) / 21;
+        int side = (int) Math.ceil(Math.sqrt(cities));
+        Plot wilderness = Plot.wilderness(world);
+        int claimed = 0;
+        for(int i = 0; i < cities && claimed < count; i++){
+            int cityX = (i % side) * 1024, cityZ = (i / side) * 1024;
+            Plot city = claim(service, world, wilderness, cityX, cityZ, 1000);
+            claimed++;
+            for(int d = 0; d < 4 && claimed < count; d++){
+                int districtX = cityX + 10 + (d & 1) * 490, districtZ = cityZ + 10 + (d >> 1) * 490;
+                Plot district = claim(service, world, city, districtX, districtZ, 480);
+                claimed++;
+                for(int l = 0; l < 4 && claimed < count; l++){
+                    claim(service, world, district, districtX + 10 + (l & 1) * 235, districtZ + 10 + (l >> 1) * 235, 220);
+                    claimed++;
+                }
+            }
+        }
+        return side * 1024;
+    }
+
+    private static Plot claim(PropertyService service, World world, Plot parent, int x, int z, int size){
+        Plot plot = service.createPlot(Optional.empty(), world, parent);
+        plot.addPoint(new PlotPoint(x, z));
+        plot.addPoint(new PlotPoint(x + size, z));
+        plot.addPoint(new PlotPoint(x + size, z + size));
+        plot.addPoint(new PlotPoint(x, z + size));
+        service.savePlot(plot);
+        return plot;
+    }
+
+    public static World createWorld(String name){
+        UUID worldId = UUID.randomUUID();
+        return stub(World.class, (method, args) -> {
+            switch (method.getName()){
+                case "getUniqueId": return worldId;
+                case "getName": return name;
+            }
+            return null;
+        });
+    }
+
+    //Like stub, but Sponge interfaces are answered with further stubs, so builders and scoreboards can be used without effect.
+    //Tasks handed to the scheduler never run.
+    public static <T> T deepStub(Class<T> type){
+        return stub(type, (method, args) -> {
+            Class<?> returnType = method.getReturnType();
+            if(returnType == Object.class && args != null && args.length == 1 && args[0] instanceof Class) returnType = (Class<?>) args[0]; //createBuilder(Class)
+            if(returnType.isInterface() && returnType.getName().startsWith("org.spongepowered.")) return deepStub(returnType);
+            return null;
+        });
+    }
+
+    //Interface implementation answering with the handler, or empty values for everything it leaves out.
+    @SuppressWarnings("unchecked")
+    public static <T> T stub(Class<T> type, BiFunction<Method, Object[], Object> handler){
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()){
+                case "equals": return proxy == args[0];
+                case "hashCode": return System.identityHashCode(proxy);
+                case "toString": return type.getSimpleName();
+            }
+            Object result = handler.apply(method, args);
+            if(result != null) return result;
+            Class<?> returnType = method.getReturnType();
+            if(returnType == Optional.class) return Optional.empty();
+            if(returnType == boolean.class) return false;
+            if(returnType == int.class) return 0;
+            if(returnType == long.class) return 0L;
+            if(returnType == double.class) return 0.0;
+            if(returnType == float.class) return 0f;
+            return null;
+        });
+    }
+}
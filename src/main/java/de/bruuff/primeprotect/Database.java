@@ -29,23 +29,24 @@ import org.spongepowered.api.service.sql.SqlService;
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Database {
 
     public static final String JDBC_URL = "jdbc:h2:./mods/PrimeProtect/data.db";
-    private SqlService sql;
-    private Game game;
-
-    public Database(Game game) {
-        this.game = game;
-    }
-
-    public boolean load(){
-        Connection conn = getConnection();
-        if (conn == null) return false;
 
-        String sql = "CREATE TABLE IF NOT EXISTS primePlot (" +
+    //Each entry brings the schema one version further. Never change an entry once released, append a new one.
+    private static final String[] MIGRATIONS = {
+            //1: Initial tables
+            "CREATE TABLE IF NOT EXISTS primePlot (" +
                 "id INT(11) UNSIGNED AUTO_INCREMENT PRIMARY KEY, " +
                 "owner VARCHAR(100) NULL, " +
                 "world VARCHAR(100) NOT NULL, " +
@@ -64,18 +65,68 @@ public class Database {
                 "name VARCHAR(32) PRIMARY KEY, " +
                 "users TEXT NOT NULL," +
                 "chatColor VARCHAR(20) NULL" +
-                "); ";
-        boolean worked = query(conn, sql);
+                "); ",
+            //2: World scoped bounding box lookups and parent navigation
+            "CREATE INDEX IF NOT EXISTS primePlot_world_bounds ON primePlot (world, minX, maxX, minZ, maxZ); " +
+                "CREATE INDEX IF NOT EXISTS primePlot_parent ON primePlot (parent); ",
+            //3: Binary vertices, the text column is kept for readability and older versions
+            "ALTER TABLE primePlot ADD COLUMN IF NOT EXISTS vertexData VARBINARY NULL; ",
+            //4: Precomputed geometry, filled on the next save of each plot
+            "ALTER TABLE primePlot ADD COLUMN IF NOT EXISTS area DOUBLE NULL; " +
+                "ALTER TABLE primePlot ADD COLUMN IF NOT EXISTS clockwise BOOLEAN NULL; " +
+                "ALTER TABLE primePlot ADD COLUMN IF NOT EXISTS shapeData VARBINARY NULL; "
+    };
 
-        try {
-            conn.close();
-        }  catch (SQLException e) {
-            e.printStackTrace();
-            worked = false;
+    private static final long CONNECTION_TIMEOUT_SECONDS = 10;
+
+    private SqlService sql;
+    private Game game;
+
+    private final int poolSize;
+    private final BlockingQueue<Connection> idleConnections;
+    private final AtomicInteger openConnections = new AtomicInteger();
+    //Prepared statements stay open for as long as their connection is pooled.
+    private final Map<Connection, Map<String, PreparedStatement>> statementCache = new ConcurrentHashMap<>();
+
+    public Database(Game game, int poolSize) {
+        this.game = game;
+        this.poolSize = Math.max(1, poolSize);
+        this.idleConnections = new ArrayBlockingQueue<>(this.poolSize);
+    }
+
+    public boolean load(){
+        Connection conn = getConnection();
+        if (conn == null) return false;
+
+        boolean worked = query(conn, "CREATE TABLE IF NOT EXISTS primeSchema (version INT(11) NOT NULL);");
+        int version = getSchemaVersion(conn);
+        for(int i = version; worked && i < MIGRATIONS.length; i++){
+            worked = query(conn, MIGRATIONS[i]) && query(conn, "DELETE FROM primeSchema; INSERT INTO primeSchema (version) VALUES (" + (i + 1) + ");");
         }
+
+        releaseConnection(conn);
         return worked;
     }
 
+    private int getSchemaVersion(Connection conn){
+        int version = 0;
+        PreparedStatement stmt = null;
+        ResultSet resultSet = null;
+        try {
+            stmt = conn.prepareStatement("SELECT MAX(version) AS version FROM primeSchema;");
+            resultSet = stmt.executeQuery();
+            if(resultSet.next()) version = resultSet.getInt("version"); //Stays 0 for databases from before versioning.
+        } catch (SQLException e) {e.printStackTrace();} finally {
+            try {
+                if (resultSet != null) resultSet.close();
+                if (stmt != null) stmt.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+        return version;
+    }
+
     public boolean query(Connection conn, String query){
         boolean worked = true;
         PreparedStatement stmt = null;
@@ -93,7 +144,58 @@ public class Database {
         return worked;
     }
 
+    //Borrows a connection from the pool. Every connection has to be handed back with releaseConnection.
+    //Null if the database is unreachable or the pool stays exhausted for CONNECTION_TIMEOUT_SECONDS, callers have to check.
     public Connection getConnection(){
+        Connection conn = idleConnections.poll();
+        if(conn != null) return conn;
+        if(openConnections.incrementAndGet() <= poolSize){
+            conn = openConnection();
+            if(conn == null) openConnections.decrementAndGet();
+            return conn;
+        }
+        openConnections.decrementAndGet();
+        try {
+            conn = idleConnections.poll(CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return conn;
+    }
+
+    public void releaseConnection(Connection conn){
+        if(conn == null) return;
+        try {
+            if(!conn.isClosed() && idleConnections.offer(conn)) return;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        discardConnection(conn);
+    }
+
+    //Returns the cached statement of this connection for the query, preparing it on first use. Do not close it.
+    public PreparedStatement prepare(Connection conn, String query) throws SQLException {
+        Map<String, PreparedStatement> statements = statementCache.get(conn);
+        if(statements == null){
+            statements = new HashMap<>();
+            statementCache.put(conn, statements);
+        }
+        PreparedStatement stmt = statements.get(query);
+        if(stmt == null || stmt.isClosed()){
+            stmt = conn.prepareStatement(query);
+            statements.put(query, stmt);
+        }
+        return stmt;
+    }
+
+    public void close(){
+        Connection conn;
+        while((conn = idleConnections.poll()) != null){
+            discardConnection(conn);
+        }
+    }
+
+    private Connection openConnection(){
         try {
             DataSource dataSource = getDataSource(JDBC_URL);
             if (dataSource != null ) return dataSource.getConnection();
@@ -103,6 +205,19 @@ public class Database {
         return null;
     }
 
+    private void discardConnection(Connection conn){
+        Map<String, PreparedStatement> statements = statementCache.remove(conn);
+        try {
+            if(statements != null){
+                for(PreparedStatement stmt : statements.values()) stmt.close();
+            }
+            conn.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        openConnections.decrementAndGet();
+    }
+
     public DataSource getDataSource(String jdbcUrl){
         if (sql == null) {
             sql = game.getServiceManager().provide(SqlService.class).get();
@@ -32,6 +32,8 @@ import java.util.UUID;
 
 public class Group {
 
+    public static final int MAX_NAME_LENGTH = 32; //Size of primeGroup.name
+
     String name;
     Map<UUID, Rank> users;
     Optional<TextColor> chatColor;
@@ -0,0 +1,52 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+//All groups, loaded once. Plots and commands share these instances, so a membership change is seen everywhere at once.
+public class GroupRegistry {
+
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+
+    public Optional<Group> get(String name){
+        return Optional.ofNullable(groups.get(name));
+    }
+
+    //Returns the group that was registered under that name before, if any.
+    public Optional<Group> put(Group group){
+        return Optional.ofNullable(groups.put(group.getName(), group));
+    }
+
+    public Collection<Group> getGroups(){
+        return groups.values();
+    }
+
+    public int size(){
+        return groups.size();
+    }
+}
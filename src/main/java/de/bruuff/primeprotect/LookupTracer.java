@@ -0,0 +1,150 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import org.slf4j.Logger;
+import org.spongepowered.api.world.World;
+
+import java.util.concurrent.TimeUnit;
+
+//Opt-in timing of single plot lookups, split into the stages they go through. Lookups slower than the threshold are logged
+//with their position, stage times and the plots they looked at. Switched off, every call is a single field read.
+public class LookupTracer {
+
+    public enum Stage { CONNECTION, QUERY, ROWS, OWNER, CANDIDATES, CONTAINS, PARENTS, AREA }
+
+    private static final int LOGGED_CANDIDATES = 20;
+
+    private final Logger logger;
+    private final Metrics metrics;
+    private final ThreadLocal<Trace> traces = ThreadLocal.withInitial(Trace::new);
+    private volatile boolean enabled;
+    private volatile long slowNanos;
+
+    public LookupTracer(Logger logger, Metrics metrics) {
+        this.logger = logger;
+        this.metrics = metrics;
+    }
+
+    public void configure(boolean enabled, long slowMillis){
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMillis);
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //Starts a trace on this thread. Returns false if tracing is off or a lookup further out is already traced, finish only when true.
+    public boolean begin(World world, int x, int z){
+        if(!enabled) return false;
+        Trace trace = traces.get();
+        if(trace.active) return false;
+        trace.start(world, x, z);
+        return true;
+    }
+
+    //Adds the time since the last mark to the stage.
+    public void mark(Stage stage){
+        if(!enabled) return;
+        Trace trace = traces.get();
+        if(trace.active) trace.mark(stage);
+    }
+
+    //Plots found near the position, before the bounding box test.
+    public void candidates(int count){
+        if(!enabled) return;
+        Trace trace = traces.get();
+        if(trace.active) trace.candidateCount += count;
+    }
+
+    //Plot whose polygon got tested.
+    public void tested(Plot plot){
+        if(!enabled) return;
+        Trace trace = traces.get();
+        if(trace.active) trace.tested(plot.getId());
+    }
+
+    //Result may be null if the lookup failed.
+    public void finish(Plot result){
+        Trace trace = traces.get();
+        trace.active = false;
+        long nanos = System.nanoTime() - trace.start;
+        if(nanos < slowNanos) return;
+        metrics.slowLookups.increment();
+        logger.warn(trace.describe(nanos, result));
+    }
+
+    private static class Trace {
+        boolean active;
+        String world;
+        int x, z;
+        long start, last;
+        final long[] stages = new long[Stage.values().length];
+        final int[] tested = new int[LOGGED_CANDIDATES];
+        int candidateCount, testedCount;
+
+        void start(World world, int x, int z){
+            this.active = true;
+            this.world = world.getName();
+            this.x = x;
+            this.z = z;
+            for(int i = 0; i < stages.length; i++) stages[i] = 0;
+            candidateCount = testedCount = 0;
+            start = last = System.nanoTime();
+        }
+
+        void mark(Stage stage){
+            long now = System.nanoTime();
+            stages[stage.ordinal()] += now - last;
+            last = now;
+        }
+
+        void tested(int id){
+            if(testedCount < LOGGED_CANDIDATES) tested[testedCount] = id;
+            testedCount++;
+        }
+
+        String describe(long nanos, Plot result){
+            StringBuilder message = new StringBuilder("Slow plot lookup: ").append(millis(nanos)).append("ms at ")
+                    .append(world).append(' ').append(x).append(',').append(z);
+            if(result != null) message.append(" found plot ").append(result.getId()).append(" (").append(result.getDisplayName()).append("). ");
+            else message.append(" failed. ");
+            for(Stage stage : Stage.values()){
+                if(stages[stage.ordinal()] == 0) continue;
+                message.append(stage.name().toLowerCase()).append(' ').append(millis(stages[stage.ordinal()])).append("ms, ");
+            }
+            message.append(candidateCount).append(" candidates, ").append(testedCount).append(" polygons tested");
+            for(int i = 0; i < Math.min(testedCount, LOGGED_CANDIDATES); i++){
+                message.append(i == 0 ? ": " : ", ").append(tested[i]);
+            }
+            if(testedCount > LOGGED_CANDIDATES) message.append(", ...");
+            return message.toString();
+        }
+
+        private static String millis(long nanos){
+            return String.format("%.2f", nanos / 1e6);
+        }
+    }
+}
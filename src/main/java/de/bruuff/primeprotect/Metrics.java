@@ -0,0 +1,154 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+//Counters and durations of the code that runs for every move, block change and interaction.
+//Time spent finding and checking plots is also added up per plot and per region of 512x512 blocks, to see where it goes.
+//Values are since the last reset, which happens with every dump.
+public class Metrics {
+
+    private static final int REGION_SHIFT = 9;
+
+    public final LongAdder permissionChecks = new LongAdder();
+    public final LongAdder permissionDenied = new LongAdder();
+    public final LongAdder lookups = new LongAdder();
+    public final LongAdder areaHits = new LongAdder(); //Moves answered by the area of the last lookup
+    public final LongAdder chunkCacheHits = new LongAdder();
+    public final LongAdder chunkCacheMisses = new LongAdder();
+    public final LongAdder rowsScanned = new LongAdder(); //Index candidates or database rows looked at
+    public final LongAdder polygonsTested = new LongAdder();
+    public final LongAdder plotSaves = new LongAdder();
+    public final LongAdder groupSaves = new LongAdder();
+    public final LongAdder slowLookups = new LongAdder(); //Traced lookups over the threshold
+
+    public final LatencyHistogram permissionTime = new LatencyHistogram();
+    public final LatencyHistogram lookupTime = new LatencyHistogram();
+    public final LatencyHistogram plotSaveTime = new LatencyHistogram();
+    public final LatencyHistogram groupSaveTime = new LatencyHistogram();
+    public final LatencyHistogram visualizerTime = new LatencyHistogram();
+
+    private final Map<Integer, LongAdder> plotNanos = new ConcurrentHashMap<>();
+    private final Map<Long, LongAdder> regionNanos = new ConcurrentHashMap<>();
+    private volatile boolean timed = true;
+    private volatile long since = System.currentTimeMillis();
+
+    //Counters are always kept, durations only while timed.
+    public boolean isTimed() {
+        return timed;
+    }
+
+    public void setTimed(boolean timed) {
+        this.timed = timed;
+    }
+
+    //Start of a measured section, 0 if not timed.
+    public long start(){
+        return timed ? System.nanoTime() : 0;
+    }
+
+    //Records the time since start and returns it, 0 if not timed.
+    public long stop(LatencyHistogram histogram, long start){
+        if(start == 0) return 0;
+        long nanos = System.nanoTime() - start;
+        histogram.record(nanos);
+        return nanos;
+    }
+
+    public void chargePlot(int plotId, long nanos){
+        if(nanos > 0) plotNanos.computeIfAbsent(plotId, id -> new LongAdder()).add(nanos);
+    }
+
+    public void chargeRegion(int x, int z, long nanos){
+        if(nanos > 0) regionNanos.computeIfAbsent(PlotChunkCache.key(x >> REGION_SHIFT, z >> REGION_SHIFT), key -> new LongAdder()).add(nanos);
+    }
+
+    //Plot ids with the most time spent on them, most expensive first.
+    public List<Map.Entry<Integer, Long>> getTopPlots(int count){
+        return top(plotNanos, count);
+    }
+
+    //Region keys as in PlotChunkCache.key, see getRegionX and getRegionZ.
+    public List<Map.Entry<Long, Long>> getTopRegions(int count){
+        return top(regionNanos, count);
+    }
+
+    public static int getRegionX(long region){
+        return (int) (region >> 32);
+    }
+
+    public static int getRegionZ(long region){
+        return (int) region;
+    }
+
+    private static <K> List<Map.Entry<K, Long>> top(Map<K, LongAdder> costs, int count){
+        List<Map.Entry<K, Long>> entries = new ArrayList<>();
+        for(Map.Entry<K, LongAdder> entry : costs.entrySet()){
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().sum()));
+        }
+        entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        return entries.subList(0, Math.min(count, entries.size()));
+    }
+
+    public long getSince() {
+        return since;
+    }
+
+    public void reset(){
+        for(LongAdder counter : getCounters().values()) counter.reset();
+        for(LatencyHistogram histogram : getHistograms().values()) histogram.reset();
+        plotNanos.clear();
+        regionNanos.clear();
+        since = System.currentTimeMillis();
+    }
+
+    public Map<String, LongAdder> getCounters(){
+        Map<String, LongAdder> counters = new LinkedHashMap<>();
+        counters.put("permissionChecks", permissionChecks);
+        counters.put("permissionDenied", permissionDenied);
+        counters.put("lookups", lookups);
+        counters.put("areaHits", areaHits);
+        counters.put("chunkCacheHits", chunkCacheHits);
+        counters.put("chunkCacheMisses", chunkCacheMisses);
+        counters.put("rowsScanned", rowsScanned);
+        counters.put("polygonsTested", polygonsTested);
+        counters.put("plotSaves", plotSaves);
+        counters.put("groupSaves", groupSaves);
+        counters.put("slowLookups", slowLookups);
+        return counters;
+    }
+
+    public Map<String, LatencyHistogram> getHistograms(){
+        Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+        histograms.put("permission", permissionTime);
+        histograms.put("lookup", lookupTime);
+        histograms.put("plotSave", plotSaveTime);
+        histograms.put("groupSave", groupSaveTime);
+        histograms.put("visualizer", visualizerTime);
+        return histograms;
+    }
+}
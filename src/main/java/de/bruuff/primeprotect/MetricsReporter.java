@@ -0,0 +1,148 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+//Turns the metrics into text for /prime stats and the log, and into CSV rows for spreadsheets.
+public class MetricsReporter {
+
+    private static final int TOP_COUNT = 5;
+
+    private final Metrics metrics;
+    private final PlotPropertyService service;
+    private final Logger logger;
+    private final Optional<File> csvFile;
+
+    public MetricsReporter(Metrics metrics, PlotPropertyService service, Logger logger, Optional<File> csvFile) {
+        this.metrics = metrics;
+        this.service = service;
+        this.logger = logger;
+        this.csvFile = csvFile;
+    }
+
+    //Plot names are only looked up on the main thread, the periodic dump shows ids.
+    public List<String> summarize(boolean plotNames){
+        List<String> lines = new ArrayList<>();
+        lines.add("PrimeProtect stats for the last " + formatDuration(System.currentTimeMillis() - metrics.getSince()) + (metrics.isTimed() ? ":" : " (timings off):"));
+        for(Map.Entry<String, LatencyHistogram> entry : metrics.getHistograms().entrySet()){
+            LatencyHistogram histogram = entry.getValue();
+            if(histogram.getCount() == 0) continue;
+            lines.add(entry.getKey() + ": " + histogram.getCount() + " in " + formatNanos(histogram.getTotal())
+                    + ", p50 " + formatNanos(histogram.getPercentile(50)) + ", p99 " + formatNanos(histogram.getPercentile(99))
+                    + ", max " + formatNanos(histogram.getMax()));
+        }
+        StringBuilder counters = new StringBuilder("counters:");
+        for(Map.Entry<String, LongAdder> entry : metrics.getCounters().entrySet()){
+            counters.append(' ').append(entry.getKey()).append(' ').append(entry.getValue().sum()).append(',');
+        }
+        lines.add(counters.substring(0, counters.length() - 1));
+        WriteBehindQueue writeQueue = service.getWriteQueue();
+        lines.add("write queue: " + writeQueue.getQueueDepth() + " pending, " + writeQueue.getFlushCount() + " flushes, last "
+                + formatNanos(writeQueue.getLastFlushNanos()) + ", max " + formatNanos(writeQueue.getMaxFlushNanos()));
+
+        StringBuilder plots = new StringBuilder("top plots:");
+        for(Map.Entry<Integer, Long> entry : metrics.getTopPlots(TOP_COUNT)){
+            plots.append(" #").append(entry.getKey());
+            if(plotNames){
+                Optional<Plot> optPlot = service.getPlot(entry.getKey());
+                if(optPlot.isPresent()) plots.append(' ').append(optPlot.get().getDisplayName());
+            }
+            plots.append(' ').append(formatNanos(entry.getValue())).append(',');
+        }
+        lines.add(plots.substring(0, plots.length() - 1));
+        StringBuilder regions = new StringBuilder("top regions:");
+        for(Map.Entry<Long, Long> entry : metrics.getTopRegions(TOP_COUNT)){
+            regions.append(' ').append(regionName(entry.getKey())).append(' ').append(formatNanos(entry.getValue())).append(',');
+        }
+        lines.add(regions.substring(0, regions.length() - 1));
+        return lines;
+    }
+
+    //Logs the summary, appends it to the CSV file and starts over. Safe to run off the main thread.
+    public void dump(){
+        for(String line : summarize(false)) logger.info(line);
+        if(csvFile.isPresent()) writeCsv(csvFile.get());
+        metrics.reset();
+    }
+
+    //One row per histogram, counter, top plot and top region: time,name,count,total_us,p50_us,p99_us,max_us
+    private void writeCsv(File file){
+        boolean header = !file.exists();
+        long time = System.currentTimeMillis();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file, true))) {
+            if(header) writer.println("time,name,count,total_us,p50_us,p99_us,max_us");
+            for(Map.Entry<String, LatencyHistogram> entry : metrics.getHistograms().entrySet()){
+                LatencyHistogram histogram = entry.getValue();
+                writer.println(time + "," + entry.getKey() + "," + histogram.getCount() + "," + micros(histogram.getTotal()) + ","
+                        + micros(histogram.getPercentile(50)) + "," + micros(histogram.getPercentile(99)) + "," + micros(histogram.getMax()));
+            }
+            for(Map.Entry<String, LongAdder> entry : metrics.getCounters().entrySet()){
+                writer.println(time + "," + entry.getKey() + "," + entry.getValue().sum() + ",,,,");
+            }
+            WriteBehindQueue writeQueue = service.getWriteQueue();
+            writer.println(time + ",writeQueue," + writeQueue.getQueueDepth() + ",," + micros(writeQueue.getLastFlushNanos()) + ",," + micros(writeQueue.getMaxFlushNanos()));
+            for(Map.Entry<Integer, Long> entry : metrics.getTopPlots(TOP_COUNT)){
+                writer.println(time + ",plot " + entry.getKey() + ",," + micros(entry.getValue()) + ",,,");
+            }
+            for(Map.Entry<Long, Long> entry : metrics.getTopRegions(TOP_COUNT)){
+                writer.println(time + ",region " + regionName(entry.getKey()) + ",," + micros(entry.getValue()) + ",,,");
+            }
+        } catch (IOException e) {
+            logger.error("Could not write metrics to " + file + ".");
+        }
+    }
+
+    //Region file coordinates, r.x.z.mca
+    private static String regionName(long region){
+        return Metrics.getRegionX(region) + ":" + Metrics.getRegionZ(region);
+    }
+
+    private static long micros(long nanos){
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static String formatNanos(long nanos){
+        if(nanos < 10_000) return nanos / 1000.0 + "us";
+        if(nanos < 10_000_000) return TimeUnit.NANOSECONDS.toMicros(nanos) + "us";
+        return TimeUnit.NANOSECONDS.toMillis(nanos) + "ms";
+    }
+
+    private static String formatDuration(long millis){
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(millis);
+        if(seconds < 60) return seconds + "s";
+        return seconds / 60 + "m " + seconds % 60 + "s";
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+//Remembers the Wilderness decisions of PlotOwner.containsUser, which ask the user storage and the permission plugin, and the names of player owners.
+//Permission plugins change nodes without telling us, so decisions only live for a short while. Reload and disconnect drop them right away.
+final class PermissionCache {
+
+    private static final long DECISION_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private static final Map<UUID, Decision[]> wildernessDecisions = new ConcurrentHashMap<>(); //Player -> decision per rank
+    private static final Map<UUID, String> names = new ConcurrentHashMap<>();
+
+    private PermissionCache() {
+    }
+
+    public static Boolean getWildernessDecision(UUID uuid, Rank rank){
+        Decision[] ranks = wildernessDecisions.get(uuid);
+        if(ranks == null) return null;
+        Decision decision = ranks[rank.ordinal()];
+        if(decision == null || System.nanoTime() - decision.time > DECISION_NANOS) return null;
+        return decision.allowed;
+    }
+
+    public static void putWildernessDecision(UUID uuid, Rank rank, boolean allowed){
+        wildernessDecisions.computeIfAbsent(uuid, player -> new Decision[Rank.values().length])[rank.ordinal()] = new Decision(allowed, System.nanoTime());
+    }
+
+    public static String getName(UUID uuid){
+        return names.get(uuid);
+    }
+
+    public static void putName(UUID uuid, String name){
+        names.put(uuid, name);
+    }
+
+    //Permissions and name may have changed while the player was gone.
+    public static void invalidatePlayer(UUID uuid){
+        wildernessDecisions.remove(uuid);
+        names.remove(uuid);
+    }
+
+    public static void clear(){
+        wildernessDecisions.clear();
+    }
+
+    private static class Decision {
+        final boolean allowed;
+        final long time;
+
+        Decision(boolean allowed, long time) {
+            this.allowed = allowed;
+            this.time = time;
+        }
+    }
+}
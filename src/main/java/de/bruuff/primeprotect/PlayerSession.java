@@ -0,0 +1,99 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import org.spongepowered.api.entity.living.player.Player;
+
+import java.util.Optional;
+import java.util.UUID;
+
+//Everything the plugin keeps about an online player. Read by scheduler tasks, so all state is volatile.
+public class PlayerSession {
+
+    private final UUID playerId;
+    private volatile Player player;
+    private volatile Plot editingPlot; //Claim in progress
+    private volatile Plot shownPlot; //Plot whose border is drawn for the player
+    private volatile PlotArea plotArea; //Where the player was last seen, see PlotArea
+    private volatile int visualizerCursor;
+
+    public PlayerSession(Player player) {
+        this.playerId = player.getUniqueId();
+        this.player = player;
+    }
+
+    public UUID getPlayerId() {
+        return playerId;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    void setPlayer(Player player) {
+        this.player = player;
+    }
+
+    public Optional<Plot> getEditingPlot() {
+        return Optional.ofNullable(editingPlot);
+    }
+
+    public Optional<Plot> getShownPlot() {
+        return Optional.ofNullable(shownPlot);
+    }
+
+    //Claims are always shown to the claiming player.
+    public void startEditing(Plot plot){
+        editingPlot = plot;
+        shownPlot = plot;
+        visualizerCursor = 0;
+    }
+
+    public void stopEditing(){
+        editingPlot = null;
+        shownPlot = null;
+    }
+
+    public Optional<PlotArea> getPlotArea() {
+        return Optional.ofNullable(plotArea);
+    }
+
+    public void setPlotArea(PlotArea plotArea) {
+        this.plotArea = plotArea;
+    }
+
+    int getVisualizerCursor() {
+        return visualizerCursor;
+    }
+
+    void setVisualizerCursor(int visualizerCursor) {
+        this.visualizerCursor = visualizerCursor;
+    }
+
+    //The old world's area and border position mean nothing in the new one.
+    void changeWorld(){
+        plotArea = null;
+        visualizerCursor = 0;
+    }
+}
@@ -34,7 +34,11 @@ public class Plot {
     private int depth;
     private PlotPoint centroid;
     private Integer minX, minZ, maxX, maxZ;
-    private Set<PlotLine> borderBlockLines;
+    private PlotBorder border;
+    private PlotRenderList renderList;
+    private PlotShape shape;
+    private Double area;
+    private Boolean clockwise;
 
     private List<PlotPoint> vertices;
 
@@ -53,23 +57,13 @@ public class Plot {
         this.centroid = new PlotPoint(0,0);
     }
 
-    public Plot(int id, Optional<PlotOwner> optOwner, World world, String verticesString, int depth) {
-        this.id = id;
-        this.optOwner = optOwner;
-        this.world = world;
-        this.optParent = Optional.empty();
-        this.depth = depth;
-        this.vertices = getVerticesList(verticesString);
-        this.centroid = calcCentroid();
-    }
-
-    public Plot(int id, Optional<PlotOwner> optOwner, World world, String verticesString, PlotPoint centroid, int depth, Optional<Plot> parent, int minX, int minZ, int maxX, int maxZ) {
+    public Plot(int id, Optional<PlotOwner> optOwner, World world, List<PlotPoint> vertices, PlotPoint centroid, int depth, Optional<Plot> parent, int minX, int minZ, int maxX, int maxZ) {
         this.id = id;
         this.optOwner = optOwner;
         this.world = world;
         this.optParent = parent;
         this.depth = depth;
-        this.vertices = getVerticesList(verticesString);
+        this.vertices = vertices;
         this.centroid = centroid;
         this.minX = minX;
         this.minZ = minZ;
@@ -97,17 +91,11 @@ public class Plot {
     }
 
     private boolean doAlign(PlotPoint vertex1, PlotPoint vertex2){
-        double distanceX = vertex1.getX() - vertex2.getX();
-        double distanceY = vertex1.getZ() - vertex2.getZ();
-        double ratio;
-        if(distanceX != 0){
-            ratio = Math.abs(distanceY / distanceX);
-        }else if(distanceY != 0){
-            ratio = Math.abs(distanceX / distanceY);
-        }else return false; //Vertices are the same.
-        if(ratio > 1) ratio = 1/ratio;
-
-        if( (ratio * 1) != Math.round(ratio * 1) ){
+        int distanceX = Math.abs(vertex1.getX() - vertex2.getX());
+        int distanceZ = Math.abs(vertex1.getZ() - vertex2.getZ());
+        if(distanceX == 0 && distanceZ == 0) return false; //Vertices are the same.
+        //Only straight and 45 degree lines.
+        if(distanceX != 0 && distanceZ != 0 && distanceX != distanceZ){
             return false;
         }
 
@@ -133,27 +121,15 @@ public class Plot {
         }
         for(PlotLine borderLine : borderLines){
             if(borderLine.equals(line)) continue;
-            if(borderLine.intersection(line).isPresent()){
-                PlotPoint intersection = borderLine.intersection(line).get();
-                if(!intersection.equals(borderLine.getP1()) && !intersection.equals(borderLine.getP2()) && !intersection.equals(line.getP1()) && !intersection.equals(line.getP2())){
-                    return true;
-                }
-            }
+            if(borderLine.crosses(line)) return true;
         }
         return false;
     }
 
 
     public boolean isValidShape(){
-        //This could probably be a bit better optimized. But we are not using it often, so its fine for now.
-        List<PlotLine> borderLines = getBorderLines();
-        if(optParent.isPresent()) {
-            borderLines.addAll(optParent.get().getBorderLines());
-        }
-        for(PlotLine borderLine : borderLines){
-            if(intersectsBorder(borderLine)) return false;
-        }
-        return true;
+        List<PlotPoint> parentVertices = optParent.isPresent() ? optParent.get().getVertices() : Collections.emptyList();
+        return PlotValidator.isValidShape(vertices, parentVertices);
     }
 
 
@@ -222,6 +198,16 @@ public class Plot {
         return maxZ;
     }
 
+    //True if the plot fills its whole bounding box.
+    public boolean isRectangle(){
+        if(vertices.size() != 4 || minX == null) return false;
+        for(PlotPoint vertex : vertices){
+            if(vertex.getX() != minX && vertex.getX() != maxX) return false;
+            if(vertex.getZ() != minZ && vertex.getZ() != maxZ) return false;
+        }
+        return true;
+    }
+
     public Optional<PlotOwner> getOwner() {
         return optOwner;
     }
@@ -251,50 +237,23 @@ public class Plot {
     }
 
     public boolean contains(PlotPoint point){
+        return contains(point.getX(), point.getZ());
+    }
+
+    //Anything on the border counts as inside.
+    public boolean contains(int x, int z){
         if(id < 0) return true; //Wilderness contains everything.
         //Simple bounding box check
         if(minX == null) update();
-        if(minX != null && point.getX() < minX || point.getZ() < minZ || point.getX() > maxX || point.getX() > maxZ) return false;
-        //Now connect each border line with the first vertex to form a triangle. Then count in how many we are in.
-        List<PlotPoint[]> triangles = new ArrayList<>();
-        for(int i = 0; i < vertices.size(); i++){   //Any edge but the last
-            if(i != vertices.size() - 1){
-                if(new PlotLine(vertices.get(i), vertices.get(i+1)).contains(point, true)) return true; //Anything on the border is automatically inside.
-            }else{
-                if(new PlotLine(vertices.get(i), vertices.get(0)).contains(point, true)) return true; //Anything on the border is automatically inside.
-            }
-            if(i == 0 || i == vertices.size() - 1) continue; //triangle to the start vertex would make no sense.
-            PlotPoint[] triangle = {vertices.get(0),vertices.get(i), vertices.get(i+1)};
-            triangles.add(triangle);
-        }
-        double counter = 0;
-        for(PlotPoint[] triangle : triangles){
-            int s1 = (int) Math.signum(point.cross(triangle[0], triangle[1])), 
-                s2 = (int) Math.signum(point.cross(triangle[1], triangle[2])), 
-                s3 = (int) Math.signum(point.cross(triangle[2], triangle[0]));
-            if(s1 == 0 && s2 == 0 && s3 == 0) continue; //Remove any triangles that have no surface area
-            if(s1 == s2 && s2 == s3){
-                counter++;
-            }else if( s1 <= 0 && s2 <= 0 && s3 <= 0 ){  //if we are standing on a border, we will also catch the other
-                counter += 0.5;
-            }else if( s1 >= 0 && s2 >= 0 && s3 >= 0){
-                counter -= 0.5;
-            }
-        }
-        //Even number -> not in, odd number -> in
-        return counter % 2 != 0;
+        if(minX == null || x < minX || z < minZ || x > maxX || z > maxZ) return false;
+        return getShape().contains(x, z);
     }
 
     public boolean contains(PlotLine line){
         //If it crosses any border of the plot, it can't be fully contained.
+        //We allow touching the border for this.
         for(PlotLine borderLine : this.getBorderLines()){
-            Optional<PlotPoint> optIntersection = line.intersection(borderLine);
-            if(optIntersection.isPresent()){
-                PlotPoint intersection = optIntersection.get();
-                //We allow touching the border for this.
-                if(line.contains(intersection, true)) continue;
-                return false;
-            }
+            if(line.crosses(borderLine)) return false;
         }
         //If its either completely in or completely out, we can just test one point.
         return this.contains(line.getP1());
@@ -307,22 +266,71 @@ public class Plot {
         return centroid;
     }
 
-    public Set<PlotLine> getBorderBlocksLines(){
-        if(borderBlockLines == null || (borderBlockLines.isEmpty() && vertices.size() > 1)){
-            update();
+    //Computed on first use, only plots that get shown need it.
+    public PlotBorder getBorder(){
+        if(border == null){
+            border = new PlotBorder(vertices, isClockwise());
         }
-        return borderBlockLines;
+        return border;
     }
 
-    private boolean isClockwise(){
-        double sum = 0;
-        for(PlotLine plotline: this.getBorderLines()){
-            sum += (plotline.getP2().getX()-plotline.getP1().getX()) * (plotline.getP2().getZ()+plotline.getP1().getZ());
+    //Shared by all players viewing this plot.
+    PlotRenderList getRenderList(){
+        if(renderList == null){
+            renderList = new PlotRenderList(getBorder(), vertices);
         }
-        return sum > 0;
+        return renderList;
+    }
+
+    public boolean isClockwise(){
+        if(clockwise == null) calcArea();
+        return clockwise;
+    }
+
+    //In blocks, measured between the vertex corners.
+    public double getArea(){
+        if(area == null) calcArea();
+        return area;
+    }
+
+    //Builds shape, area and border now instead of on first use. Only while the plot is not shared with other threads yet.
+    void compile(){
+        getShape();
+        getArea();
+        getBorder();
+    }
+
+    PlotShape getShape(){
+        if(shape == null) shape = new PlotShape(vertices);
+        return shape;
+    }
+
+    //Geometry saved along with the plot, so loading it needs no recomputation. Missing values are computed on first use.
+    void loadGeometry(Double area, Boolean clockwise, byte[] shapeData){
+        this.area = area;
+        this.clockwise = clockwise;
+        if(shapeData != null) this.shape = PlotShape.fromBytes(shapeData);
+    }
+
+    private void calcArea(){
+        long sum = 0;
+        int n = vertices.size();
+        for(int i = 0; i < n; i++){
+            PlotPoint p1 = vertices.get(i), p2 = vertices.get((i+1) % n);
+            sum += (long) (p2.getX() - p1.getX()) * (p2.getZ() + p1.getZ());
+        }
+        clockwise = sum > 0;
+        area = Math.abs(sum) / 2.0;
     }
 
     private void update(){
+        //All rebuilt when needed
+        shape = null;
+        border = null;
+        renderList = null;
+        area = null;
+        clockwise = null;
+
         //Updating Centroid
         if(vertices.size() >= 2){
             centroid = calcCentroid();
@@ -334,53 +342,24 @@ public class Plot {
 
         //Updating bounding box
         for( PlotPoint point : vertices){
-            if(minX == null || minX > point.getX()) minX = (int) point.round().getX();
-            if(minZ == null || minZ > point.getZ()) minZ = (int) point.round().getZ();
-            if(maxX == null || maxX < point.getX()) maxX = (int) point.round().getX();
-            if(maxZ == null || maxZ < point.getZ()) maxZ = (int) point.round().getZ();
-        }
-
-        //Update BorderBlockLines
-        borderBlockLines = new HashSet<>();
-        boolean clockwise = this.isClockwise();
-        for(PlotLine line : this.getBorderLines()){
-            PlotPoint current = line.getP1();
-            PlotPoint end = line.getP2();
-            boolean start = true;
-            while(!current.equals(end)){
-                PlotPoint direction = new PlotPoint(0, 0);
-                if(current.getX() < end.getX()) direction.setX(1);
-                else if(current.getX() > end.getX()) direction.setX(-1);
-                if(current.getZ() < end.getZ()) direction.setY(1);
-                else if(current.getZ() > end.getZ()) direction.setY(-1);
-                if(start){
-                    start = false;
-                }else{
-                    current.add(direction);
-                }
-
-                if(clockwise){
-                    if(direction.getX() == -1) borderBlockLines.add(new PlotLine(current.getX()+1, current.getZ()-0, current.getX()-0, current.getZ()-0));
-                    if(direction.getZ() == -1) borderBlockLines.add(new PlotLine(current.getX()+1, current.getZ()+1, current.getX()+1, current.getZ()-0));
-                    if(direction.getX() == 1) borderBlockLines.add(new PlotLine(current.getX()-0, current.getZ()+1, current.getX()+1, current.getZ()+1));
-                    if(direction.getZ() == 1) borderBlockLines.add(new PlotLine(current.getX()-0, current.getZ()-0, current.getX()-0, current.getZ()+1));
-                }else{
-                    if(direction.getX() == -1) borderBlockLines.add(new PlotLine(current.getX()-0, current.getZ()+1, current.getX()+1, current.getZ()+1));
-                    if(direction.getZ() == -1) borderBlockLines.add(new PlotLine(current.getX()-0, current.getZ()-0, current.getX()-0, current.getZ()+1));
-                    if(direction.getX() == 1) borderBlockLines.add(new PlotLine(current.getX()+1, current.getZ()-0, current.getX()-0, current.getZ()-0));
-                    if(direction.getZ() == 1) borderBlockLines.add(new PlotLine(current.getX()+1, current.getZ()+1, current.getX()+1, current.getZ()-0));
-                }
-            }
+            if(minX == null || minX > point.getX()) minX = point.getX();
+            if(minZ == null || minZ > point.getZ()) minZ = point.getZ();
+            if(maxX == null || maxX < point.getX()) maxX = point.getX();
+            if(maxZ == null || maxZ < point.getZ()) maxZ = point.getZ();
         }
     }
 
     private List<PlotLine> getBorderLines(){
+        return getBorderLines(vertices);
+    }
+
+    static List<PlotLine> getBorderLines(List<PlotPoint> vertices){
         List<PlotLine> borderLines = new ArrayList<>();
         if(vertices.size() <= 1) return borderLines;
         for(int i = 0; i < vertices.size() - 1; i++){
-            borderLines.add(new PlotLine(vertices.get(i).getX(), vertices.get(i).getZ(), vertices.get(i+1).getX(), vertices.get(i+1).getZ()));
+            borderLines.add(new PlotLine(vertices.get(i), vertices.get(i+1)));
         }
-        borderLines.add(new PlotLine(vertices.get(vertices.size()-1).getX(), vertices.get(vertices.size()-1).getZ(), vertices.get(0).getX(), vertices.get(0).getZ()));
+        borderLines.add(new PlotLine(vertices.get(vertices.size()-1), vertices.get(0)));
         return borderLines;
     }
 
@@ -394,49 +373,53 @@ public class Plot {
         }else if(vertices.size() == 2){
             PlotPoint p1 = vertices.get(0);
             PlotPoint p2 = vertices.get(1);
-            return new PlotPoint((p1.getX() + p2.getX())/2, (p1.getZ() + p2.getZ())/2);
+            return new PlotPoint(Math.round((p1.getX() + p2.getX())/2f), Math.round((p1.getZ() + p2.getZ())/2f));
         }else{
             double px = 0, py = 0, area = 0;
             int n = vertices.size();
-            vertices.add(vertices.get(0));
-
-            for(int i = 0; i <= n-1; i++){
-                area += 0.5 * (vertices.get(i).getX() * vertices.get(i+1).getZ() - vertices.get(i+1).getX() * vertices.get(i).getZ());
-            }
-
-            for(int i = 0; i <= n-1; i++){
-                px += (vertices.get(i).getX() + vertices.get(i+1).getX()) * (vertices.get(i).getX() * vertices.get(i+1).getZ() - vertices.get(i+1).getX() * vertices.get(i).getZ());
+            for(int i = 0; i < n; i++){
+                //Doubles, as the products overflow int for plots far out.
+                double x1 = vertices.get(i).getX(), z1 = vertices.get(i).getZ();
+                double x2 = vertices.get((i+1) % n).getX(), z2 = vertices.get((i+1) % n).getZ();
+                double cross = x1 * z2 - x2 * z1;
+                area += 0.5 * cross;
+                px += (x1 + x2) * cross;
+                py += (z1 + z2) * cross;
             }
             px = px / (6 * area);
-
-            for(int i = 0; i <= n-1; i++){
-                py += (vertices.get(i).getZ() + vertices.get(i+1).getZ()) * (vertices.get(i).getX() * vertices.get(i+1).getZ() - vertices.get(i+1).getX() * vertices.get(i).getZ());
-            }
             py = py / (6 * area);
 
-            vertices.remove(n);
-            return(new PlotPoint(px, py).round());
+            return new PlotPoint((int) Math.round(px), (int) Math.round(py));
         }
     }
 
     public String getVerticesString(){
-        String output = "";
+        StringBuilder output = new StringBuilder(vertices.size() * 16);
         for( PlotPoint point : vertices){
-            output += "[" + point.getX() + "," + point.getZ() + "]";
+            output.append('[').append(point.getX()).append(',').append(point.getZ()).append(']');
         }
-        return output;
+        return output.toString();
     }
 
+    //Parses the text form "[x,z][x,z]...". Older rows have decimals like "12.0", those are cut off.
     public static List<PlotPoint> getVerticesList(String vertexString){
         List<PlotPoint> verticesList = new ArrayList<>();
-        vertexString = vertexString.substring(1,vertexString.length()-1);
-        if(vertexString.contains("][")){
-            for(String position : vertexString.split("\\]\\[")){
-                if(position.contains(",")){
-                    int x = (int) Double.parseDouble(position.split(",")[0]);
-                    int z = (int) Double.parseDouble(position.split(",")[1]);
-                    verticesList.add(new PlotPoint(x, z));
-                }
+        int x = 0, value = 0, sign = 1;
+        boolean fraction = false;
+        for(int i = 0; i < vertexString.length(); i++){
+            char c = vertexString.charAt(i);
+            if(c >= '0' && c <= '9'){
+                if(!fraction) value = value * 10 + (c - '0');
+            }else if(c == '-'){
+                sign = -1;
+            }else if(c == '.'){
+                fraction = true;
+            }else if(c == ',' || c == ']'){
+                if(c == ',') x = sign * value;
+                else verticesList.add(new PlotPoint(x, sign * value));
+                value = 0;
+                sign = 1;
+                fraction = false;
             }
         }
         return verticesList;
@@ -452,79 +435,82 @@ public class Plot {
     }
 }
 
+//Immutable block position on the plot plane.
 class PlotPoint implements Comparable<PlotPoint> {
 
-    public void setX(double x) {
+    private final int x, z;
+
+    public PlotPoint(int x, int z) {
         this.x = x;
-    }
-    public void setY(double z) {
         this.z = z;
     }
 
-    double x, z;
+    public static PlotPoint unpack(long packed){
+        return new PlotPoint((int) (packed >> 32), (int) packed);
+    }
 
-    public PlotPoint(double x, double z) {
-        this.x = x;
-        this.z = z;
+    public static long pack(int x, int z){
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
     }
 
-    public void add(PlotPoint p){
-        this.x += p.getX();
-        this.z += p.getZ();
+    public long pack(){
+        return pack(x, z);
     }
 
-    public double getX() {
+    public int getX() {
         return x;
     }
 
-    public double getZ() {
+    public int getZ() {
         return z;
     }
 
-    public PlotPoint round(){
-        return new PlotPoint(Math.round(this.x), Math.round(this.z));
+    public PlotPoint add(int dx, int dz){
+        return new PlotPoint(x + dx, z + dz);
     }
 
-    public double cross(PlotPoint point1, PlotPoint point2) {
-        return (point1.getX() - x) * (point2.getZ() - z) - (point1.getZ() - z) * (point2.getX() - x);
+    //Positive if point2 lies counter clockwise of point1, seen from here.
+    public long cross(PlotPoint point1, PlotPoint point2) {
+        return (long) (point1.x - x) * (point2.z - z) - (long) (point1.z - z) * (point2.x - x);
     }
 
     public int compareTo(PlotPoint p) {
         if (this.x == p.x) {
-            return (int) Math.round(this.z - p.z);
+            return Integer.compare(this.z, p.z);
         } else {
-            return (int) Math.round(this.x - p.x);
+            return Integer.compare(this.x, p.x);
         }
     }
+
     public String toString() {
-        return "(" + (int) this.x + ", " + (int) this.z + ")";
+        return "(" + this.x + ", " + this.z + ")";
     }
 
     public boolean equals(Object o) {
         if(o instanceof PlotPoint){
             PlotPoint p = (PlotPoint) o;
-            return this.x == p.getX() && this.z == p.getZ();
+            return this.x == p.x && this.z == p.z;
         }else{
             return false;
         }
     }
 
     public int hashCode(){
-        return ( (int) this.round().getX() * (int) Math.pow(10, 32 - String.valueOf(this.x).length())) + (int) this.round().getZ();
+        return 31 * x + z;
     }
 }
 
+//Immutable line between two plot points.
 class PlotLine {
-    PlotPoint p1, p2;
+    private final PlotPoint p1, p2;
 
     public PlotLine(PlotPoint p1, PlotPoint p2) {
         this.p1 = p1;
         this.p2 = p2;
     }
 
-    public PlotLine(double x1, double y1, double x2, double y2) {
-        this.p1 = new PlotPoint(x1, y1);
-        this.p2 = new PlotPoint(x2, y2);
+    public PlotLine(int x1, int z1, int x2, int z2) {
+        this(new PlotPoint(x1, z1), new PlotPoint(x2, z2));
     }
 
     public PlotPoint getP1() {
@@ -539,51 +525,22 @@ class PlotLine {
         return "[" + this.p1.toString() + "|" + this.p2.toString() + "]";
     }
 
-    public Optional<PlotPoint> intersection(PlotLine line2){
+    //True if both lines cross at a point that is no end point of either of them. Touching and overlapping lines do not cross.
+    public boolean crosses(PlotLine line2){
         PlotPoint p3 = line2.getP1(), p4 = line2.getP2();
-        double d = (p1.getX()-p2.getX())*(p3.getZ()-p4.getZ()) - (p1.getZ()-p2.getZ())*(p3.getX()-p4.getX());
-        if(d == 0) return Optional.empty();
-
-        double xi = ((p3.getX()-p4.getX())*(p1.getX()*p2.getZ()-p1.getZ()*p2.getX())-(p1.getX()-p2.getX())*(p3.getX()*p4.getZ()-p3.getZ()*p4.getX()))/d;
-        double zi = ((p3.getZ()-p4.getZ())*(p1.getX()*p2.getZ()-p1.getZ()*p2.getX())-(p1.getZ()-p2.getZ())*(p3.getX()*p4.getZ()-p3.getZ()*p4.getX()))/d;
-
-        if ((xi < Math.min(p1.getX(),p2.getX()) || xi > Math.max(p1.getX(),p2.getX())) ||
-                (zi < Math.min(p1.getZ(),p2.getZ()) || zi > Math.max(p1.getZ(),p2.getZ()))) return Optional.empty();
-
-        if ((xi < Math.min(p3.getX(),p4.getX()) || xi > Math.max(p3.getX(),p4.getX())) ||
-                (zi < Math.min(p3.getZ(),p4.getZ()) || zi > Math.max(p3.getZ(),p4.getZ()))) return Optional.empty();
-
-        return Optional.of(new PlotPoint(xi,zi));
+        return Long.signum(p1.cross(p2, p3)) * Long.signum(p1.cross(p2, p4)) < 0
+                && Long.signum(p3.cross(p4, p1)) * Long.signum(p3.cross(p4, p2)) < 0;
     }
 
-
     public boolean contains(PlotPoint point, boolean edgeAllowed){
-
         if(point.equals(p1) || point.equals(p2)){
             return edgeAllowed;
         }
-
-        double distX = p2.getX() - p1.getX();
-        double distZ = p2.getZ() - p1.getZ();
-
-        double dist2X = p2.getX() - point.getX();
-        double dist2Z = p2.getZ() - point.getZ();
-        if(distX != 0) {
-            if(dist2X != 0 && Math.signum(dist2X) == Math.signum(distX)){
-                return Math.abs(dist2X) < Math.abs(distX) && distZ / distX == dist2Z / dist2X;
-            }
-        }else if(distZ != 0) {
-            if(dist2Z != 0 && Math.signum(dist2Z) == Math.signum(distZ)){
-                return Math.abs(dist2Z) < Math.abs(distZ) && distX / distZ == dist2X / dist2Z;
-            }
-        }
-        return false; //should be unreachable, but whatever.
+        if(point.cross(p1, p2) != 0) return false;
+        return point.getX() >= Math.min(p1.getX(), p2.getX()) && point.getX() <= Math.max(p1.getX(), p2.getX())
+                && point.getZ() >= Math.min(p1.getZ(), p2.getZ()) && point.getZ() <= Math.max(p1.getZ(), p2.getZ());
     }
-/*
-    public double cross(PlotPoint point){
-        return (p1.getX() - point.getX()) * (p2.getZ() - point.getZ()) - (p1.getZ() - point.getZ()) * (p2.getX() - point.getX());
-    }
-*/
+
     public boolean equals(Object o) {
         if(o instanceof PlotLine){
             PlotLine l = (PlotLine) o;
@@ -594,9 +551,6 @@ class PlotLine {
     }
 
     public int hashCode(){
-        return    (int) this.p1.round().getX() * (int) Math.pow(10, 32 - String.valueOf(this.p1.getX()).length())
-                + (int) this.p1.round().getZ() * (int) Math.pow(10, 24 - String.valueOf(this.p1.getZ()).length())
-                + (int) this.p2.round().getX() * (int) Math.pow(10, 16 - String.valueOf(this.p2.getX()).length())
-                + (int) this.p2.round().getZ() * (int) Math.pow(10, 8 - String.valueOf(this.p2.getZ()).length());
+        return 31 * p1.hashCode() + p2.hashCode();
     }
-}
\ No newline at end of file
+}
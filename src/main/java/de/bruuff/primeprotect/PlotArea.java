@@ -0,0 +1,63 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import org.spongepowered.api.world.World;
+
+import java.util.UUID;
+
+//A plot together with a block area around the looked up position, in which every block resolves to that same plot.
+public class PlotArea {
+
+    private final Plot plot;
+    private final UUID worldId;
+    private final int minX, minZ, maxX, maxZ;
+    private final PlotIndex index;
+    private final int indexModifications;
+
+    public PlotArea(Plot plot, World world, int minX, int minZ, int maxX, int maxZ) {
+        this(plot, world, minX, minZ, maxX, maxZ, null);
+    }
+
+    public PlotArea(Plot plot, World world, int minX, int minZ, int maxX, int maxZ, PlotIndex index) {
+        this.plot = plot;
+        this.worldId = world.getUniqueId();
+        this.minX = minX;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxZ = maxZ;
+        this.index = index;
+        this.indexModifications = index != null ? index.getModifications() : 0;
+    }
+
+    public Plot getPlot() {
+        return plot;
+    }
+
+    //False as soon as any plot got saved or deleted, as the area may have changed with it.
+    public boolean contains(World world, int x, int z){
+        if(index != null && index.getModifications() != indexModifications) return false;
+        return x >= minX && x <= maxX && z >= minZ && z <= maxZ && worldId.equals(world.getUniqueId());
+    }
+}
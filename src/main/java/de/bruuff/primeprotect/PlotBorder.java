@@ -0,0 +1,115 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import java.util.Arrays;
+import java.util.List;
+
+//The block edges along the border of a plot, each packed into a single long: start corner and one of four directions.
+//Sorted and free of duplicates, 8 bytes per edge instead of a line object with two points.
+final class PlotBorder {
+
+    static final int POSITIVE_X = 0, POSITIVE_Z = 1, NEGATIVE_X = 2, NEGATIVE_Z = 3;
+    private static final int[] STEP_X = {1, 0, -1, 0};
+    private static final int[] STEP_Z = {0, 1, 0, -1};
+
+    private final long[] edges;
+
+    PlotBorder(List<PlotPoint> vertices, boolean clockwise) {
+        int n = vertices.size();
+        int capacity = 0;
+        for(int i = 0; i < n && n > 1; i++){
+            PlotPoint from = vertices.get(i), to = vertices.get((i + 1) % n);
+            int dx = to.getX() - from.getX(), dz = to.getZ() - from.getZ();
+            capacity += (Math.max(Math.abs(dx), Math.abs(dz)) + 1) * ((dx != 0 ? 1 : 0) + (dz != 0 ? 1 : 0));
+        }
+        long[] buffer = new long[capacity];
+        int size = 0;
+        for(int i = 0; i < n && n > 1; i++){
+            PlotPoint from = vertices.get(i), to = vertices.get((i + 1) % n);
+            int x = from.getX(), z = from.getZ();
+            int directionX = Integer.signum(to.getX() - x), directionZ = Integer.signum(to.getZ() - z);
+            boolean start = true;
+            while(x != to.getX() || z != to.getZ()){
+                if(start){
+                    start = false;
+                }else{
+                    x += directionX;
+                    z += directionZ;
+                }
+                //Edges run along the outer side of the border blocks.
+                if(clockwise){
+                    if(directionX == -1) buffer[size++] = pack(x + 1, z, NEGATIVE_X);
+                    if(directionZ == -1) buffer[size++] = pack(x + 1, z + 1, NEGATIVE_Z);
+                    if(directionX == 1) buffer[size++] = pack(x, z + 1, POSITIVE_X);
+                    if(directionZ == 1) buffer[size++] = pack(x, z, POSITIVE_Z);
+                }else{
+                    if(directionX == -1) buffer[size++] = pack(x, z + 1, POSITIVE_X);
+                    if(directionZ == -1) buffer[size++] = pack(x, z, POSITIVE_Z);
+                    if(directionX == 1) buffer[size++] = pack(x + 1, z, NEGATIVE_X);
+                    if(directionZ == 1) buffer[size++] = pack(x + 1, z + 1, NEGATIVE_Z);
+                }
+            }
+        }
+        Arrays.sort(buffer, 0, size);
+        int unique = 0;
+        for(int i = 0; i < size; i++){
+            if(unique == 0 || buffer[i] != buffer[unique - 1]) buffer[unique++] = buffer[i];
+        }
+        edges = Arrays.copyOf(buffer, unique);
+    }
+
+    //30 bits x, 32 bits z, 2 bits direction. Enough for the whole world border.
+    static long pack(int x, int z, int direction){
+        return ((long) x << 34) | ((z & 0xFFFFFFFFL) << 2) | direction;
+    }
+
+    public int size(){
+        return edges.length;
+    }
+
+    public int getStartX(int i){
+        return (int) (edges[i] >> 34);
+    }
+
+    public int getStartZ(int i){
+        return (int) (edges[i] >> 2);
+    }
+
+    public int getDirection(int i){
+        return (int) (edges[i] & 3);
+    }
+
+    public int getEndX(int i){
+        return getStartX(i) + STEP_X[getDirection(i)];
+    }
+
+    public int getEndZ(int i){
+        return getStartZ(i) + STEP_Z[getDirection(i)];
+    }
+
+    public boolean contains(int x, int z, int direction){
+        return Arrays.binarySearch(edges, pack(x, z, direction)) >= 0;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import com.flowpowered.math.vector.Vector3d;
+import org.spongepowered.api.Game;
+import org.spongepowered.api.effect.particle.ParticleEffect;
+import org.spongepowered.api.effect.particle.ParticleTypes;
+import org.spongepowered.api.entity.living.player.Player;
+
+import java.util.*;
+
+//Draws plot borders with particles for the players editing them. Runs every tick with a fixed particle budget,
+//shared round robin between the viewers. Each viewer's session remembers where the last tick stopped, so big borders are drawn over several ticks.
+public class PlotBorderVisualizer {
+
+    private static final int VERTEX_PARTICLES = 11; //Pillar from 5 below to 5 above
+    private static final int PARTICLE_RANGE = 10;
+
+    private final ParticleEffect borderEffect;
+    private final ParticleEffect vertexEffect;
+    private final int viewRadius;
+    private final int particlesPerTick;
+    private int rotation;
+
+    public PlotBorderVisualizer(Game game, int viewRadius, int particlesPerTick) {
+        ParticleEffect.Builder builder = game.getRegistry().createBuilder(ParticleEffect.Builder.class);
+        this.borderEffect = builder.type(ParticleTypes.FIREWORKS_SPARK).motion(new Vector3d(0, -0.1, 0)).count(1).build();
+        this.vertexEffect = builder.type(ParticleTypes.SMOKE_LARGE).motion(new Vector3d(0, 0.01, 0)).count(1).build();
+        this.viewRadius = viewRadius;
+        this.particlesPerTick = particlesPerTick;
+    }
+
+    public void tick(List<PlayerSession> viewers){
+        if(viewers.isEmpty()) return;
+        int count = viewers.size();
+        int share = Math.max(1, particlesPerTick / count);
+        int budget = particlesPerTick;
+        int served = 0;
+        while(served < count && budget > 0){
+            PlayerSession session = viewers.get((rotation + served) % count);
+            Optional<Plot> optPlot = session.getShownPlot();
+            if(optPlot.isPresent() && optPlot.get().getWorld().getUniqueId().equals(session.getPlayer().getWorld().getUniqueId())){
+                budget -= show(session, optPlot.get(), Math.min(share, budget));
+            }
+            served++;
+        }
+        rotation = (rotation + served) % count; //Whoever was left out goes first next tick.
+    }
+
+    //Draws at most about limit particles, returns how many. Chunks out of view are skipped as a whole.
+    private int show(PlayerSession session, Plot plot, int limit){
+        Player player = session.getPlayer();
+        PlotRenderList renderList = plot.getRenderList();
+        int points = renderList.size();
+        if(points == 0) return 0;
+
+        Vector3d position = player.getLocation().getPosition();
+        double playerX = position.getX(), playerZ = position.getZ();
+        double borderY = player.getLocation().getBlockY() + 3, vertexY = player.getLocation().getBlockY() - 1.5;
+        double radiusSquared = (double) viewRadius * viewRadius;
+
+        int cursor = session.getVisualizerCursor() % points;
+        int bucket = renderList.getBucket(cursor);
+        boolean bucketInRange = renderList.isBucketInRange(bucket, playerX, playerZ, viewRadius);
+        int spawned = 0;
+        for(int scanned = 0; scanned < points && spawned < limit; ){
+            if(!bucketInRange){
+                scanned += renderList.getBucketEnd(bucket) - cursor;
+                cursor = renderList.getBucketEnd(bucket);
+            }else{
+                double x = renderList.getX(cursor), z = renderList.getZ(cursor);
+                double dx = x - playerX, dz = z - playerZ;
+                if(dx * dx + dz * dz <= radiusSquared){
+                    if(renderList.isPillar(cursor)){
+                        for(int i = -5; i <= 5; i++){
+                            player.spawnParticles(vertexEffect, new Vector3d(x, vertexY + i, z), PARTICLE_RANGE);
+                        }
+                        spawned += VERTEX_PARTICLES;
+                    }else{
+                        player.spawnParticles(borderEffect, new Vector3d(x, borderY, z), PARTICLE_RANGE);
+                        spawned++;
+                    }
+                }
+                cursor++;
+                scanned++;
+            }
+            if(cursor == renderList.getBucketEnd(bucket)){
+                bucket = (bucket + 1) % renderList.getBucketCount();
+                cursor = renderList.getBucketStart(bucket);
+                bucketInRange = renderList.isBucketInRange(bucket, playerX, playerZ, viewRadius);
+            }
+        }
+        session.setVisualizerCursor(cursor);
+        return spawned;
+    }
+}
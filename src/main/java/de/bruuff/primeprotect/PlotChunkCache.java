@@ -0,0 +1,86 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//Least recently used cache from chunk coordinates to the plots whose bounding boxes overlap that chunk.
+class PlotChunkCache {
+
+    private final int maxChunks;
+    private final LinkedHashMap<Long, List<Plot>> chunks;
+
+    public PlotChunkCache(int maxChunks) {
+        this.maxChunks = maxChunks;
+        this.chunks = new LinkedHashMap<Long, List<Plot>>(64, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, List<Plot>> eldest) {
+                return size() > PlotChunkCache.this.maxChunks;
+            }
+        };
+    }
+
+    public static long key(int chunkX, int chunkZ){
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    public List<Plot> get(int chunkX, int chunkZ){
+        return chunks.get(key(chunkX, chunkZ));
+    }
+
+    public void put(int chunkX, int chunkZ, List<Plot> candidates){
+        chunks.put(key(chunkX, chunkZ), candidates);
+    }
+
+    //Drops every cached chunk touched by the block area, bounds inclusive.
+    public void invalidate(int minX, int minZ, int maxX, int maxZ){
+        int minChunkX = minX >> 4, minChunkZ = minZ >> 4, maxChunkX = maxX >> 4, maxChunkZ = maxZ >> 4;
+        long area = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+        if(area <= chunks.size()){
+            for(int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++){
+                for(int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++){
+                    chunks.remove(key(chunkX, chunkZ));
+                }
+            }
+        }else{ //Big plots cover more chunks than we have cached, so walk the cache instead.
+            Iterator<Long> iterator = chunks.keySet().iterator();
+            while(iterator.hasNext()){
+                long key = iterator.next();
+                int chunkX = (int) (key >> 32), chunkZ = (int) key;
+                if(chunkX >= minChunkX && chunkX <= maxChunkX && chunkZ >= minChunkZ && chunkZ <= maxChunkZ) iterator.remove();
+            }
+        }
+    }
+
+    public void clear(){
+        chunks.clear();
+    }
+
+    public int size(){
+        return chunks.size();
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import org.spongepowered.api.world.World;
+
+import java.util.*;
+
+//Parent and child links of all indexed plots, top level plots are the roots of their world.
+//Every plot gets an interval, nested in the one of its parent and disjoint from its siblings, so a plot is an ancestor of another if its interval contains the other one.
+//Intervals are handed out with room to spare. A new plot takes a piece of the free room of its parent, only if that runs out the parent's subtree is laid out again.
+//Plots can be added in any order, a plot whose parent is missing waits as a root until the parent comes.
+public class PlotHierarchy {
+
+    private final Node top = new Node(null, null); //Holds one node per world, which holds the top level plots.
+    private final Map<Integer, Node> nodes = new HashMap<>();
+    private final Map<UUID, Node> worlds = new HashMap<>();
+    private final Map<Integer, List<Node>> waiting = new HashMap<>(); //Missing parent id -> plots that belong under it
+
+    public PlotHierarchy() {
+        top.enter = 0;
+        top.exit = Long.MAX_VALUE;
+        top.next = 1;
+        top.step = 1L << 56;
+    }
+
+    public void put(Plot plot){
+        Integer parentId = plot.getParent().isPresent() ? plot.getParent().get().getId() : null;
+        Node node = nodes.get(plot.getId());
+        if(node != null && Objects.equals(node.parentId, parentId) && node.plot.getWorld().getUniqueId().equals(plot.getWorld().getUniqueId())){
+            //Same place in the tree, only the plot and its bounding box changed.
+            node.plot = plot;
+            node.parent.childIndex.insert(plot);
+            return;
+        }
+        if(node == null){
+            node = new Node(plot, parentId);
+            nodes.put(plot.getId(), node);
+        }else{
+            detach(node);
+            node.plot = plot;
+            node.parentId = parentId;
+        }
+        attach(node, parentOf(node));
+        List<Node> orphans = waiting.remove(plot.getId());
+        if(orphans != null){
+            for(Node orphan : orphans){
+                detach(orphan);
+                attach(orphan, node);
+            }
+        }
+    }
+
+    public void remove(int id){
+        Node node = nodes.remove(id);
+        if(node == null) return;
+        detach(node);
+        if(node.children.isEmpty()) return;
+        //The children stay, as top level plots, until the plot comes back.
+        for(Node child : new ArrayList<>(node.children)){
+            detach(child);
+            attach(child, parentOf(child));
+        }
+    }
+
+    public List<Plot> getChildren(Plot plot){
+        Node node = nodes.get(plot.getId());
+        return node != null ? node.getPlots() : Collections.emptyList();
+    }
+
+    //Top level plots of the world, the children of its Wilderness.
+    public List<Plot> getRoots(World world){
+        Node node = worlds.get(world.getUniqueId());
+        return node != null ? node.getPlots() : Collections.emptyList();
+    }
+
+    //True if ancestor is a parent, grandparent, ... of the plot.
+    public boolean isAncestor(Plot ancestor, Plot plot){
+        Node outer = nodes.get(ancestor.getId()), inner = nodes.get(plot.getId());
+        if(outer == null || inner == null || outer == inner) return false;
+        return outer.enter < inner.enter && inner.exit < outer.exit;
+    }
+
+    //Starts at the top level plots and only goes on with the children of the plots containing the block.
+    //That's usually one per level, but siblings sharing a border both contain it, so all of them are followed.
+    public Plot getDeepestPlot(World world, int x, int z, Plot wilderness){
+        Plot plot = wilderness;
+        Node worldNode = worlds.get(world.getUniqueId());
+        if(worldNode == null) return plot;
+        Deque<Node> containing = new ArrayDeque<>();
+        containing.push(worldNode);
+        List<Plot> candidates = new ArrayList<>();
+        while(!containing.isEmpty()){
+            Node node = containing.pop();
+            if(node.childIndex == null) continue;
+            candidates.clear();
+            node.childIndex.query(x, z, candidates);
+            for(Plot candidate : candidates){
+                if(!candidate.contains(x, z)) continue;
+                if(precedes(candidate, plot)) plot = candidate;
+                containing.push(nodes.get(candidate.getId()));
+            }
+        }
+        return plot;
+    }
+
+    //Which of two plots containing a block it belongs to: the deepest, and on a border shared by plots of the same depth the lower id.
+    //Every lookup mode has to pick by this, so they all agree.
+    public static boolean precedes(Plot plot, Plot other){
+        if(plot.getDepth() != other.getDepth()) return plot.getDepth() > other.getDepth();
+        return plot.getId() < other.getId();
+    }
+
+    private Node parentOf(Node node){
+        if(node.parentId != null){
+            Node parent = nodes.get(node.parentId);
+            if(parent != null) return parent;
+            waiting.computeIfAbsent(node.parentId, id -> new ArrayList<>()).add(node);
+        }
+        return worldOf(node.plot.getWorld());
+    }
+
+    private Node worldOf(World world){
+        Node node = worlds.get(world.getUniqueId());
+        if(node == null){
+            node = new Node(null, null);
+            worlds.put(world.getUniqueId(), node);
+            attach(node, top);
+        }
+        return node;
+    }
+
+    private void detach(Node node){
+        if(node.parent != null){
+            node.parent.children.remove(node);
+            if(node.plot != null) node.parent.childIndex.remove(node.plot.getId());
+            node.parent = null;
+        }
+        List<Node> siblings = node.parentId != null ? waiting.get(node.parentId) : null;
+        if(siblings != null){
+            siblings.remove(node);
+            if(siblings.isEmpty()) waiting.remove(node.parentId);
+        }
+    }
+
+    private void attach(Node node, Node parent){
+        node.parent = parent;
+        parent.children.add(node);
+        if(node.plot != null){
+            if(parent.childIndex == null) parent.childIndex = new PlotQuadTree();
+            parent.childIndex.insert(node.plot);
+        }
+        //Two numbers per plot of the subtree. Take as much room per plot as the siblings got, or lay out the parent again if it is full.
+        int size = node.size();
+        long needed = 2L * size, free = parent.exit - parent.next;
+        if(free >= needed){
+            long width = Math.max(needed, parent.step > free / 2 / size ? free / 2 : parent.step * size);
+            node.enter = parent.next;
+            node.exit = parent.next + width - 1;
+            parent.next += width;
+            layout(node);
+            return;
+        }
+        Node ancestor = parent;
+        while(!layout(ancestor)) ancestor = ancestor.parent; //The top has room for every plot there can be.
+    }
+
+    //Spreads the subtree over the interval of the node, leaving half of the room free. False if it does not fit.
+    private static boolean layout(Node node){
+        long range = node.exit - node.enter - 1;
+        long needed = 2L * (node.size() - 1);
+        if(range < needed) return false;
+        long cursor = node.enter + 1;
+        node.step = Math.max(2, range / 4);
+        if(needed > 0){
+            long spare = Math.max(1, range / needed / 2);
+            node.step = 2 * spare;
+            for(Node child : node.children){
+                long width = child.size() * node.step;
+                child.enter = cursor;
+                child.exit = cursor + width - 1;
+                cursor += width;
+                layout(child);
+            }
+        }
+        node.next = cursor;
+        return true;
+    }
+
+    private static class Node {
+        Plot plot; //Null for the world and top nodes
+        Integer parentId;
+        Node parent;
+        final List<Node> children = new ArrayList<>();
+        PlotQuadTree childIndex;
+        long enter, exit; //Interval of the node, all of its subtree lies inside.
+        long next;        //Start of the free room after the last child
+        long step;        //Room per plot the children got at the last layout
+
+        Node(Plot plot, Integer parentId) {
+            this.plot = plot;
+            this.parentId = parentId;
+        }
+
+        int size(){
+            int size = 1;
+            for(Node child : children) size += child.size();
+            return size;
+        }
+
+        List<Plot> getPlots(){
+            List<Plot> plots = new ArrayList<>(children.size());
+            for(Node child : children) plots.add(child.plot);
+            return plots;
+        }
+    }
+}
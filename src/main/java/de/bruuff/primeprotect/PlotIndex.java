@@ -0,0 +1,162 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import org.spongepowered.api.world.World;
+
+import java.util.*;
+
+//Memory resident copy of all saved plots, so position lookups never have to touch the database.
+public class PlotIndex {
+
+    private static final int CACHED_CHUNKS_PER_WORLD = 4096;
+
+    private final Map<UUID, PlotQuadTree> worlds = new HashMap<>();
+    private final Map<UUID, PlotChunkCache> chunkCaches = new HashMap<>();
+    private final Map<Integer, Plot> plots = new HashMap<>();
+    private final Map<Integer, int[]> bounds = new HashMap<>(); //Bounding box each plot was indexed with
+    private final PlotHierarchy hierarchy = new PlotHierarchy();
+    private final Metrics metrics;
+    private volatile int modifications;
+
+    public PlotIndex(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void add(Plot plot){
+        if(plot.getVertices().isEmpty()){
+            remove(plot.getId()); //Nothing to find yet, plot is still being claimed.
+            return;
+        }
+        Plot old = plots.put(plot.getId(), plot);
+        if(old != null){
+            //Moved or reshaped, the hierarchy keeps its place and children.
+            worlds.get(old.getWorld().getUniqueId()).remove(plot.getId());
+            invalidateChunks(old.getWorld().getUniqueId(), bounds.get(plot.getId()));
+        }
+        bounds.put(plot.getId(), new int[]{plot.getMinX(), plot.getMinZ(), plot.getMaxX(), plot.getMaxZ()});
+        UUID worldId = plot.getWorld().getUniqueId();
+        if(!worlds.containsKey(worldId)) worlds.put(worldId, new PlotQuadTree());
+        worlds.get(worldId).insert(plot);
+        hierarchy.put(plot);
+        invalidateChunks(worldId, bounds.get(plot.getId()));
+        modifications++;
+    }
+
+    //Adds plots read without their parents, parentIds holds the parent column of each, 0 for top level plots.
+    //Parents are linked first, so the hierarchy sees them. Returns the plots whose parent is not among them.
+    public List<Plot> load(List<Plot> loaded, Map<Integer, Integer> parentIds){
+        Map<Integer, Plot> byId = new HashMap<>();
+        for(Plot plot : loaded) byId.put(plot.getId(), plot);
+        List<Plot> orphans = new ArrayList<>();
+        for(Plot plot : loaded){
+            Integer parentId = parentIds.get(plot.getId());
+            if(parentId == null || parentId <= 0) continue;
+            Plot parent = byId.get(parentId);
+            if(parent != null) plot.setParent(parent);
+            else orphans.add(plot);
+        }
+        for(Plot plot : loaded) add(plot);
+        return orphans;
+    }
+
+    //Adds a copy of a plot that was built outside of the index, like the database path does while warming up.
+    //Parent and children are switched to the indexed objects, so nobody keeps asking an outdated copy for its owner.
+    public void adopt(Plot plot){
+        if(plot.getParent().isPresent()){
+            Plot parent = plots.get(plot.getParent().get().getId());
+            if(parent != null) plot.setParent(parent);
+        }
+        add(plot);
+        for(Plot child : hierarchy.getChildren(plot)) child.setParent(plot);
+    }
+
+    public boolean remove(int id){
+        Plot plot = plots.remove(id);
+        if(plot == null) return false;
+        UUID worldId = plot.getWorld().getUniqueId();
+        PlotQuadTree tree = worlds.get(worldId);
+        if(tree != null) tree.remove(id);
+        hierarchy.remove(id);
+        invalidateChunks(worldId, bounds.remove(id));
+        modifications++;
+        return true;
+    }
+
+    //Changes with every added or removed plot.
+    public int getModifications(){
+        return modifications;
+    }
+
+    private void invalidateChunks(UUID worldId, int[] box){
+        PlotChunkCache chunkCache = chunkCaches.get(worldId);
+        if(chunkCache != null) chunkCache.invalidate(box[0], box[1], box[2], box[3]);
+    }
+
+    public PlotHierarchy getHierarchy(){
+        return hierarchy;
+    }
+
+    public Optional<Plot> get(int id){
+        return Optional.ofNullable(plots.get(id));
+    }
+
+    public Collection<Plot> getPlots(){
+        return plots.values();
+    }
+
+    public int size(){
+        return plots.size();
+    }
+
+    //All plots of the world whose bounding box overlaps the chunk of the block. Bounding box and polygon test are left to the caller.
+    //The returned list is shared with the cache and must not be modified.
+    public List<Plot> getCandidates(World world, int x, int z){
+        PlotQuadTree tree = worlds.get(world.getUniqueId());
+        if(tree == null) return Collections.emptyList();
+        PlotChunkCache chunkCache = chunkCaches.get(world.getUniqueId());
+        if(chunkCache == null){
+            chunkCache = new PlotChunkCache(CACHED_CHUNKS_PER_WORLD);
+            chunkCaches.put(world.getUniqueId(), chunkCache);
+        }
+        int chunkX = x >> 4, chunkZ = z >> 4;
+        List<Plot> candidates = chunkCache.get(chunkX, chunkZ);
+        if(candidates == null){
+            metrics.chunkCacheMisses.increment();
+            candidates = new ArrayList<>();
+            tree.query(chunkX << 4, chunkZ << 4, (chunkX << 4) + 15, (chunkZ << 4) + 15, candidates);
+            chunkCache.put(chunkX, chunkZ, candidates);
+        }else metrics.chunkCacheHits.increment();
+        return candidates;
+    }
+
+    //Loaded plots hold their own group instance, so membership changes have to be handed to them.
+    public void updateGroup(Group group){
+        for(Plot plot : plots.values()){
+            if(plot.getOwner().isPresent() && plot.getOwner().get().isGroup() && plot.getOwner().get().getGroup().getName().equals(group.getName())){
+                plot.setOwner(new PlotOwner(group));
+            }
+        }
+    }
+}
@@ -24,6 +24,7 @@
 package de.bruuff.primeprotect;
 
 import org.spongepowered.api.Sponge;
+import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.service.user.UserStorageService;
 import java.util.Optional;
 import java.util.UUID;
@@ -48,15 +49,22 @@ public class PlotOwner{
         return (group != null);
     }
 
+    public Group getGroup() {
+        return group;
+    }
+
     public String getName(){
         String name = "Unknown";
         if(this.isUser()) {
+            String cachedName = PermissionCache.getName(userUUID);
+            if(cachedName != null) return cachedName;
             name = "Unknown Player";
             Optional<UserStorageService> optUserStorageService= Sponge.getGame().getServiceManager().provide(UserStorageService.class);
             if(optUserStorageService.isPresent()){
-                UserStorageService userStorageService = optUserStorageService.get();
-                if(userStorageService.get(userUUID).isPresent()){
-                    name = userStorageService.get(userUUID).get().getName();
+                Optional<User> optUser = optUserStorageService.get().get(userUUID);
+                if(optUser.isPresent()){
+                    name = optUser.get().getName();
+                    PermissionCache.putName(userUUID, name);
                 }
             }
         }else if(this.isGroup()) {
@@ -68,31 +76,39 @@ public class PlotOwner{
     public boolean containsUser(UUID uuid, Rank rank){
         if(this.isUser()){
             return userUUID.equals(uuid);
+        }else if(group.getName().equals("Wilderness")){
+            Boolean cachedDecision = PermissionCache.getWildernessDecision(uuid, rank);
+            if(cachedDecision != null) return cachedDecision;
+            boolean decision = groupContainsUser(uuid, rank);
+            PermissionCache.putWildernessDecision(uuid, rank, decision);
+            return decision;
         }else{
-            if(group.getName().equals("Wilderness")){//This is the case for the wilderness permission group, hard coded for now.
-                if(!rank.equals(Rank.MEMBER)){
-                    Optional<UserStorageService> optUserStorageService= Sponge.getGame().getServiceManager().provide(UserStorageService.class);
-                    if(optUserStorageService.isPresent()){
-                        UserStorageService userStorageService = optUserStorageService.get();
-                        if(userStorageService.get(uuid).isPresent()){
-                            if(userStorageService.get(uuid).get().hasPermission("primeprotect.wilderness.claim")){
-                                return true;
-                            }
-                        }
+            return groupContainsUser(uuid, rank);
+        }
+    }
+
+    private boolean groupContainsUser(UUID uuid, Rank rank){
+        if(group.getName().equals("Wilderness")){//This is the case for the wilderness permission group, hard coded for now.
+            if(!rank.equals(Rank.MEMBER)){
+                Optional<UserStorageService> optUserStorageService= Sponge.getGame().getServiceManager().provide(UserStorageService.class);
+                if(optUserStorageService.isPresent()){
+                    Optional<User> optUser = optUserStorageService.get().get(uuid);
+                    if(optUser.isPresent() && optUser.get().hasPermission("primeprotect.wilderness.claim")){
+                        return true;
                     }
-                    return false;
-                }else{
-                    return true;
                 }
+                return false;
+            }else{
+                return true;
             }
-            if(group.getUsers().containsKey(uuid)){
-                if(rank.equals(Rank.OPERATOR)) {
-                    if(group.getUsers().get(uuid).equals(Rank.OPERATOR)) return true;
-                }else if(rank.equals(Rank.ASSISTANT)) {
-                    if(!group.getUsers().get(uuid).equals(Rank.MEMBER)) return true;
-                }else{
-                    return true;
-                }
+        }
+        if(group.getUsers().containsKey(uuid)){
+            if(rank.equals(Rank.OPERATOR)) {
+                if(group.getUsers().get(uuid).equals(Rank.OPERATOR)) return true;
+            }else if(rank.equals(Rank.ASSISTANT)) {
+                if(!group.getUsers().get(uuid).equals(Rank.MEMBER)) return true;
+            }else{
+                return true;
             }
         }
         return false;
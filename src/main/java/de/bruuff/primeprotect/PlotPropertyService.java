@@ -24,6 +24,7 @@
 package de.bruuff.primeprotect;
 
 import com.flowpowered.math.vector.Vector3d;
+import com.flowpowered.math.vector.Vector3i;
 import org.spongepowered.api.text.format.TextColors;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
@@ -33,18 +34,324 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class PlotPropertyService implements PropertyService {
 
+    private static final String SQL_PLOT_BY_ID = "SELECT * FROM primePlot WHERE id = ?;";
+    private static final String SQL_PLOTS_AT_POSITION = "SELECT * FROM primePlot WHERE world = ? AND minX <= ? AND minZ <= ? AND maxX >= ? AND maxZ >= ?;";
+    private static final String SQL_GROUP_BY_NAME = "SELECT * FROM primeGroup WHERE name = ?;";
+    private static final String SQL_ALL_PLOTS = "SELECT * FROM primePlot WHERE minX IS NOT NULL;";
+
+    private static final int WARMUP_FETCH_SIZE = 500;
+    private static final int COMPILE_BATCH_SIZE = 256;
+
     private PrimeProtect plugin;
 
     private Database DB;
 
+    private WriteBehindQueue writeQueue;
+    private final AtomicInteger nextPlotId = new AtomicInteger();
+
+    private GroupRegistry groupRegistry; //Same as the plot index, null until all groups are loaded.
+    private volatile PlotIndex plotIndex; //Stays null until the warm-up has loaded all plots, database is used until then.
+    private final Object warmupLock = new Object();
+    private Map<Integer, Plot> warmupEdits = new LinkedHashMap<>(); //Saved plots, or null for deleted ones, while warming up. Guarded by warmupLock, null once done.
+    private Set<String> warmupGroups = new HashSet<>(); //Same for changed groups
+    private final CountDownLatch warmupDone = new CountDownLatch(1);
+    private volatile boolean stopping;
+    private final boolean descentLookup;
+    private final LookupTracer tracer;
+
     public PlotPropertyService(PrimeProtect plugin) {
         this.plugin = plugin;
-        DB = new Database(plugin.game);
+        descentLookup = plugin.mainConfig.getNode("plots", "lookup").getString("index").equalsIgnoreCase("descent");
+        tracer = new LookupTracer(plugin.logger, plugin.metrics);
+        configureTracer();
+        DB = new Database(plugin.game, plugin.mainConfig.getNode("database", "poolSize").getInt(4));
         if( !DB.load() ) plugin.logger.info("Error loading Database.");
+        convertVertexStrings();
+        writeQueue = new WriteBehindQueue(DB, plugin.logger, plugin.mainConfig.getNode("database", "flushInterval").getInt(500));
+        loadGroups();
+        loadNextPlotId();
+        startWarmup();
+    }
+
+    //Writes all queued changes and closes the database, call on server stop.
+    public void shutdown(){
+        stopping = true;
+        writeQueue.shutdown();
+        DB.close();
+    }
+
+    public WriteBehindQueue getWriteQueue() {
+        return writeQueue;
+    }
+
+    //Reads the trace settings again, after a config reload.
+    public void configureTracer(){
+        tracer.configure(plugin.mainConfig.getNode("plots", "trace", "enabled").getBoolean(false),
+                plugin.mainConfig.getNode("plots", "trace", "slowMillis").getLong(50));
+    }
+
+    //Plot ids are handed out in memory, as new plots only reach the database with the next flush.
+    private void loadNextPlotId(){
+        final Connection conn = DB.getConnection();
+        if(conn == null){
+            plugin.logger.error("No database connection for the next plot id, claiming is disabled.");
+            return;
+        }
+        try {
+            nextPlotId.set(getAutoIncrement(conn, "primePlot", "id"));
+        }catch (SQLException e) {
+            plugin.logger.error("SQLException getting auto increment.");
+        }
+        DB.releaseConnection(conn);
+    }
+
+    private void loadGroups(){
+        final Connection conn = DB.getConnection();
+        if(conn == null) return;
+        GroupRegistry registry = new GroupRegistry();
+        try {
+            PreparedStatement stmt = conn.prepareStatement("SELECT * FROM primeGroup;");
+            ResultSet resultSet = stmt.executeQuery();
+            while (resultSet.next()){
+                registry.put(new Group(resultSet.getString("name"),
+                        parseUsers(resultSet.getString("users")),
+                        Optional.of(TextColors.AQUA)
+                ));
+            }
+            resultSet.close();
+            stmt.close();
+            groupRegistry = registry;
+            plugin.logger.info("Loaded " + registry.size() + " groups.");
+        }catch (SQLException e) {
+            plugin.logger.error("SQLException in load");
+        }
+        DB.releaseConnection(conn);
+    }
+
+    //Loads all plots on a background thread, so the server comes up with every plot in memory instead of querying for the first players.
+    private void startWarmup(){
+        Map<String, World> worlds = new HashMap<>(); //Looked up here on the main thread
+        for(World world : plugin.game.getServer().getWorlds()) worlds.put(world.getUniqueId().toString(), world);
+        int threads = plugin.mainConfig.getNode("plots", "warmupThreads").getInt(0);
+        if(threads <= 0) threads = Runtime.getRuntime().availableProcessors();
+        final int parallelism = threads;
+        Thread thread = new Thread(() -> warmUp(worlds, parallelism), "PrimeProtect-Warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void warmUp(Map<String, World> worlds, int parallelism){
+        long start = System.nanoTime();
+        final Connection conn = DB.getConnection();
+        if(conn == null){
+            failWarmup();
+            return;
+        }
+        //Rows are read one after another on this thread, shapes and borders are compiled on the pool meanwhile.
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        List<Plot> plots = new ArrayList<>();
+        List<ForkJoinTask<?>> compiling = new ArrayList<>();
+        Map<Integer, Integer> parentIds = new HashMap<>();
+        try {
+            PreparedStatement stmt = conn.prepareStatement(SQL_ALL_PLOTS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(WARMUP_FETCH_SIZE);
+            ResultSet resultSet = stmt.executeQuery();
+            List<Plot> batch = new ArrayList<>(COMPILE_BATCH_SIZE);
+            while (!stopping && resultSet.next()){
+                String worldId = resultSet.getString("world");
+                World world = worlds.containsKey(worldId) ? worlds.get(worldId) : getPlotWorld(worldId);
+                Plot plot = readPlot(conn, resultSet, world);
+                plots.add(plot);
+                parentIds.put(plot.getId(), resultSet.getInt("parent"));
+                batch.add(plot);
+                if(batch.size() == COMPILE_BATCH_SIZE){
+                    compiling.add(pool.submit(compileTask(batch)));
+                    batch = new ArrayList<>(COMPILE_BATCH_SIZE);
+                }
+            }
+            if(!batch.isEmpty()) compiling.add(pool.submit(compileTask(batch)));
+            resultSet.close();
+            stmt.close();
+        }catch (SQLException e) {
+            plugin.logger.error("SQLException in load");
+            pool.shutdownNow();
+            failWarmup();
+            return;
+        }finally {
+            DB.releaseConnection(conn);
+        }
+        for(ForkJoinTask<?> task : compiling) task.join();
+        pool.shutdown();
+        if(stopping){
+            failWarmup();
+            return;
+        }
+
+        PlotIndex index = new PlotIndex(plugin.metrics);
+        for(Plot orphan : index.load(plots, parentIds)){
+            plugin.logger.warn("Parent plot " + parentIds.get(orphan.getId()) + " of plot " + orphan.getId() + " missing in Database.");
+        }
+
+        //Changes made meanwhile may or may not have reached the rows read above, so apply them again and publish in one go.
+        int replayed;
+        synchronized (warmupLock){
+            for(Map.Entry<Integer, Plot> edit : warmupEdits.entrySet()){
+                if(edit.getValue() != null) index.adopt(edit.getValue()); //Built by the database path, not from the index
+                else index.remove(edit.getKey());
+            }
+            for(String name : warmupGroups){
+                Optional<Group> optGroup = groupRegistry != null ? groupRegistry.get(name) : Optional.empty();
+                if(optGroup.isPresent()) index.updateGroup(optGroup.get());
+            }
+            replayed = warmupEdits.size() + warmupGroups.size();
+            warmupEdits = null;
+            warmupGroups = null;
+            plotIndex = index;
+        }
+        warmupDone.countDown();
+        plugin.logger.info("Loaded " + index.size() + " plots in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms, "
+                + replayed + " changes made meanwhile replayed.");
+    }
+
+    private Runnable compileTask(List<Plot> batch){
+        return () -> {
+            for(Plot plot : batch){
+                try {
+                    plot.compile();
+                } catch (RuntimeException e) {
+                    plugin.logger.warn("Could not compile shape of plot " + plot.getId() + ", trying again on first use.");
+                }
+            }
+        };
+    }
+
+    //Database stays in charge of lookups.
+    private void failWarmup(){
+        synchronized (warmupLock){
+            warmupEdits = null;
+            warmupGroups = null;
+        }
+        warmupDone.countDown();
+        if(!stopping) plugin.logger.error("Could not load plots into memory, using the database for every lookup.");
+    }
+
+    //Waits for the warm-up, true if plots are served from memory afterwards.
+    public boolean awaitWarmup(long timeout, TimeUnit unit) throws InterruptedException {
+        warmupDone.await(timeout, unit);
+        return plotIndex != null;
+    }
+
+    //Hands a saved plot, or null for a deleted one, to the index. While warming up it is kept until the index is published.
+    private void updateIndex(int id, Plot plot){
+        PlotIndex index = plotIndex;
+        if(index == null){
+            synchronized (warmupLock){
+                index = plotIndex;
+                if(index == null){
+                    if(warmupEdits != null) warmupEdits.put(id, plot);
+                    return;
+                }
+            }
+        }
+        if(plot != null) index.add(plot);
+        else index.remove(id);
+    }
+
+    private void updateIndexGroup(Group group){
+        PlotIndex index = plotIndex;
+        if(index == null){
+            synchronized (warmupLock){
+                index = plotIndex;
+                if(index == null){
+                    if(warmupGroups != null) warmupGroups.add(group.getName());
+                    return;
+                }
+            }
+        }
+        index.updateGroup(group);
+    }
+
+    //Rows written before the binary vertex column only have the text form, encode them once.
+    private void convertVertexStrings(){
+        final Connection conn = DB.getConnection();
+        if(conn == null) return;
+        int converted = 0;
+        try {
+            PreparedStatement select = conn.prepareStatement("SELECT id, vertices FROM primePlot WHERE vertexData IS NULL;");
+            PreparedStatement update = conn.prepareStatement("UPDATE primePlot SET vertexData = ? WHERE id = ?;");
+            ResultSet resultSet = select.executeQuery();
+            while (resultSet.next()){
+                update.setBytes(1, VertexCodec.encode(Plot.getVerticesList(resultSet.getString("vertices"))));
+                update.setInt(2, resultSet.getInt("id"));
+                update.addBatch();
+                converted++;
+            }
+            resultSet.close();
+            if(converted > 0) update.executeBatch();
+            select.close();
+            update.close();
+            if(converted > 0) plugin.logger.info("Converted vertices of " + converted + " plots to the binary format.");
+        }catch (SQLException e) {
+            plugin.logger.error("SQLException in vertex conversion");
+        }
+        DB.releaseConnection(conn);
+    }
+
+    //Builds the plot in the current row, parent is left to the caller.
+    private Plot readPlot(Connection conn, ResultSet resultSet) throws SQLException {
+        return readPlot(conn, resultSet, getPlotWorld(resultSet.getString("world")));
+    }
+
+    private Plot readPlot(Connection conn, ResultSet resultSet, World world) throws SQLException {
+        Optional<PlotOwner> optPlotOwner = Optional.empty();
+        if(resultSet.getString("owner") != null){
+            tracer.mark(LookupTracer.Stage.ROWS);
+            optPlotOwner = getOptPlotOwner(conn, resultSet.getString("owner"));
+            tracer.mark(LookupTracer.Stage.OWNER);
+        }
+
+        Plot plot = new Plot(resultSet.getInt("id"),
+                optPlotOwner,
+                world,
+                readVertices(resultSet),
+                new PlotPoint(resultSet.getInt("centroidX"), resultSet.getInt("centroidZ")),
+                resultSet.getInt("depth"),
+                Optional.empty(),
+                resultSet.getInt("minX"),
+                resultSet.getInt("minZ"),
+                resultSet.getInt("maxX"),
+                resultSet.getInt("maxZ")
+        );
+        double area = resultSet.getDouble("area");
+        Double optArea = resultSet.wasNull() ? null : area;
+        boolean clockwise = resultSet.getBoolean("clockwise");
+        Boolean optClockwise = resultSet.wasNull() ? null : clockwise;
+        plot.loadGeometry(optArea, optClockwise, resultSet.getBytes("shapeData"));
+        return plot;
+    }
+
+    private static List<PlotPoint> readVertices(ResultSet resultSet) throws SQLException {
+        byte[] vertexData = resultSet.getBytes("vertexData");
+        if(vertexData != null) return VertexCodec.decode(vertexData);
+        return Plot.getVerticesList(resultSet.getString("vertices"));
+    }
+
+    private World getPlotWorld(String worldId){
+        Optional<World> optWorld = plugin.game.getServer().getWorld(UUID.fromString(worldId));
+        if(optWorld.isPresent()){
+            return optWorld.get();
+        }else{
+            return plugin.game.getServer().getWorlds().iterator().next();
+        }
     }
 
     @Override
@@ -54,88 +361,292 @@ public class PlotPropertyService implements PropertyService {
 
     @Override
     public Plot getPlot(Vector3d position, World world) {
-        final Connection conn = DB.getConnection();
-        Plot plot = getPlot(conn, position, world);
+        long start = plugin.metrics.start();
+        boolean traced = tracer.begin(world, position.getFloorX(), position.getFloorZ());
+        Plot plot = null;
         try {
-            conn.close();
-        } catch (SQLException e) { plugin.logger.info("Could not close connection"); }
+            if(plotIndex != null){
+                plot = getIndexedPlot(position, world);
+            }else{
+                final Connection conn = DB.getConnection();
+                tracer.mark(LookupTracer.Stage.CONNECTION);
+                if(conn == null){
+                    plugin.logger.error("No database connection for plot lookup, treating position as wilderness.");
+                    plot = Plot.wilderness(world);
+                }else{
+                    plot = getPlot(conn, position, world);
+                    DB.releaseConnection(conn);
+                }
+            }
+        } finally {
+            if(traced) tracer.finish(plot);
+        }
+        chargeLookup(plot, position.getFloorX(), position.getFloorZ(), plugin.metrics.stop(plugin.metrics.lookupTime, start));
         return plot;
     }
 
+    private void chargeLookup(Plot plot, int x, int z, long nanos){
+        plugin.metrics.lookups.increment();
+        plugin.metrics.chargePlot(plot.getId(), nanos);
+        plugin.metrics.chargeRegion(x, z, nanos);
+    }
+
     @Override
     public Optional<Plot> getPlot(int id) {
+        if(plotIndex != null) return plotIndex.get(id);
         final Connection conn = DB.getConnection();
+        if(conn == null) return Optional.empty();
         Optional<Plot> optPlot = getPlot(conn, id);
-        try {
-            conn.close();
-        } catch (SQLException e) { plugin.logger.info("Could not close connection"); }
+        DB.releaseConnection(conn);
         return optPlot;
     }
 
     @Override
     public boolean savePlot(Plot plot) {
-        boolean success;
-        final Connection conn = DB.getConnection();
-        success = savePlot(conn, plot);
-        try {
-            conn.close();
-        } catch (SQLException e) { plugin.logger.info("Could not close connection"); }
-        return success;
+        long start = plugin.metrics.start();
+        if(!writeQueue.savePlot(plot)) return false; //Shutting down, would never reach the database.
+        updateIndex(plot.getId(), plot);
+        plugin.metrics.plotSaves.increment();
+        plugin.metrics.stop(plugin.metrics.plotSaveTime, start);
+        return true;
     }
 
-    private Plot getPlot(Connection conn, Vector3d position, World world){
-        String sql = "SELECT * FROM primePlot WHERE (minX <= " + position.getFloorX() + ") " +
-                " AND (minZ <= " + position.getFloorZ() + ") " +
-                " AND (maxX >= " + position.getFloorX() + ") " +
-                " AND (maxZ >= " + position.getFloorZ() + ");";
-        PreparedStatement stmt = null;
-        ResultSet resultSet = null;
-        Plot plot = Plot.wilderness(world); // If everything else failes, wilderness.
+    @Override
+    public Map<Vector3i, Plot> getPlots(World world, Collection<Vector3i> positions) {
+        Map<Vector3i, Plot> plots = new HashMap<>();
+        if(plotIndex == null){
+            for(Vector3i position : positions) plots.put(position, getPlot(position.toDouble(), world));
+            return plots;
+        }
+        long start = plugin.metrics.start();
+        //Sort by chunk, so each chunk gets its candidates once.
+        Map<Long, List<Vector3i>> chunks = new HashMap<>();
+        for(Vector3i position : positions){
+            long chunk = PlotChunkCache.key(position.getX() >> 4, position.getZ() >> 4);
+            if(!chunks.containsKey(chunk)) chunks.put(chunk, new ArrayList<>());
+            chunks.get(chunk).add(position);
+        }
+        Plot wilderness = Plot.wilderness(world);
+        for(List<Vector3i> chunkPositions : chunks.values()){
+            Vector3i first = chunkPositions.get(0);
+            List<Plot> candidates = descentLookup ? null : plotIndex.getCandidates(world, first.getX(), first.getZ());
+            Map<Long, Plot> columns = new HashMap<>(); //Blocks above each other are always in the same plot.
+            for(Vector3i position : chunkPositions){
+                long column = PlotChunkCache.key(position.getX(), position.getZ());
+                Plot plot = columns.get(column);
+                if(plot == null){
+                    if(descentLookup) plot = plotIndex.getHierarchy().getDeepestPlot(world, position.getX(), position.getZ(), wilderness);
+                    else plot = getDeepestPlot(candidates, position.getX(), position.getZ(), wilderness);
+                    columns.put(column, plot);
+                }
+                plots.put(position, plot);
+            }
+        }
+        //One sample for the whole batch, the blocks are usually close to each other.
+        long nanos = plugin.metrics.stop(plugin.metrics.lookupTime, start);
+        plugin.metrics.lookups.add(positions.size());
+        if(!positions.isEmpty()){
+            Vector3i first = positions.iterator().next();
+            plugin.metrics.chargeRegion(first.getX(), first.getZ(), nanos);
+        }
+        return plots;
+    }
+
+    @Override
+    public PlotArea getPlotArea(Vector3d position, World world) {
+        if(plotIndex == null) return PropertyService.super.getPlotArea(position, world);
+        long start = plugin.metrics.start();
+        boolean traced = tracer.begin(world, position.getFloorX(), position.getFloorZ());
+        PlotArea area = null;
         try {
-            stmt = conn.prepareStatement(sql);
-            resultSet = stmt.executeQuery();
-            if(resultSet.isBeforeFirst()){
+            area = getIndexedPlotArea(position, world);
+            tracer.mark(LookupTracer.Stage.AREA);
+        } finally {
+            if(traced) tracer.finish(area != null ? area.getPlot() : null);
+        }
+        chargeLookup(area.getPlot(), position.getFloorX(), position.getFloorZ(), plugin.metrics.stop(plugin.metrics.lookupTime, start));
+        return area;
+    }
+
+    private PlotArea getIndexedPlotArea(Vector3d position, World world){
+        int x = position.getFloorX(), z = position.getFloorZ();
+        List<Plot> candidates = plotIndex.getCandidates(world, x, z);
+        tracer.mark(LookupTracer.Stage.CANDIDATES);
+        Plot plot = getDeepestPlot(candidates, x, z, Plot.wilderness(world));
+
+        //Start with the chunk, as nothing outside the candidates reaches into it. Then shrink it until no candidate border is left inside.
+        int[] box = {x & ~15, z & ~15, (x & ~15) + 15, (z & ~15) + 15};
+        for(Plot candidate : candidates){
+            if(x >= candidate.getMinX() && x <= candidate.getMaxX() && z >= candidate.getMinZ() && z <= candidate.getMaxZ()){
+                //Once the box is inside the plot, it is inside all of its parents as well.
+                if(candidate != plot && plotIndex.getHierarchy().isAncestor(candidate, plot)) continue;
+                if(candidate.isRectangle()){
+                    box[0] = Math.max(box[0], candidate.getMinX());
+                    box[1] = Math.max(box[1], candidate.getMinZ());
+                    box[2] = Math.min(box[2], candidate.getMaxX());
+                    box[3] = Math.min(box[3], candidate.getMaxZ());
+                }else if(!clipToBorder(box, x, z, candidate.getVertices())){
+                    return new PlotArea(plot, world, x, z, x, z, plotIndex); //Standing on the border.
+                }
+            }else{
+                cutAway(box, x, z, candidate.getMinX(), candidate.getMinZ(), candidate.getMaxX(), candidate.getMaxZ());
+            }
+        }
+        return new PlotArea(plot, world, box[0], box[1], box[2], box[3], plotIndex);
+    }
 
-                Map<Integer, Plot> plotAndParents = new TreeMap<>();
+    //Shrinks the box until no border line runs through it, so every block in it is either inside or outside. False if the block itself is on the border.
+    private static boolean clipToBorder(int[] box, int x, int z, List<PlotPoint> vertices){
+        for(int i = 0; i < vertices.size(); i++){
+            PlotPoint p1 = vertices.get(i), p2 = vertices.get((i + 1) % vertices.size());
+            int stepX = Integer.signum(p2.getX() - p1.getX()), stepZ = Integer.signum(p2.getZ() - p1.getZ());
+            int steps = Math.max(Math.abs(p2.getX() - p1.getX()), Math.abs(p2.getZ() - p1.getZ()));
+            if(stepX != 0 && stepZ != 0 && Math.abs(p2.getX() - p1.getX()) != Math.abs(p2.getZ() - p1.getZ())){
+                //Not a straight or 45 degree line, only its bounding box is known to be safe.
+                if(Math.min(p1.getX(), p2.getX()) <= x && x <= Math.max(p1.getX(), p2.getX()) && Math.min(p1.getZ(), p2.getZ()) <= z && z <= Math.max(p1.getZ(), p2.getZ())) return false;
+                cutAway(box, x, z, Math.min(p1.getX(), p2.getX()), Math.min(p1.getZ(), p2.getZ()), Math.max(p1.getX(), p2.getX()), Math.max(p1.getZ(), p2.getZ()));
+                continue;
+            }
+            //Only the part of the line inside the box matters.
+            int first = 0, last = steps;
+            if(stepX != 0){
+                first = Math.max(first, stepX > 0 ? box[0] - p1.getX() : p1.getX() - box[2]);
+                last = Math.min(last, stepX > 0 ? box[2] - p1.getX() : p1.getX() - box[0]);
+            }else if(p1.getX() < box[0] || p1.getX() > box[2]) continue;
+            if(stepZ != 0){
+                first = Math.max(first, stepZ > 0 ? box[1] - p1.getZ() : p1.getZ() - box[3]);
+                last = Math.min(last, stepZ > 0 ? box[3] - p1.getZ() : p1.getZ() - box[1]);
+            }else if(p1.getZ() < box[1] || p1.getZ() > box[3]) continue;
+            if(first > last) continue;
+            int x1 = p1.getX() + stepX * first, z1 = p1.getZ() + stepZ * first;
+            int x2 = p1.getX() + stepX * last, z2 = p1.getZ() + stepZ * last;
+            int minX = Math.min(x1, x2), minZ = Math.min(z1, z2), maxX = Math.max(x1, x2), maxZ = Math.max(z1, z2);
+            if(x < minX || x > maxX || z < minZ || z > maxZ){
+                cutAway(box, x, z, minX, minZ, maxX, maxZ);
+            }else if(stepX == 0 || stepZ == 0){
+                return false;
+            }else{
+                //Diagonal passing by. A square around the block stays clear of it if it is less than half as wide as the gap in this row.
+                int gap = Math.abs(x - (x1 + stepX * stepZ * (z - z1)));
+                if(gap == 0) return false;
+                int reach = (gap - 1) / 2;
+                box[0] = Math.max(box[0], x - reach);
+                box[1] = Math.max(box[1], z - reach);
+                box[2] = Math.min(box[2], x + reach);
+                box[3] = Math.min(box[3], z + reach);
+            }
+        }
+        return true;
+    }
 
-                while (resultSet.next()){
-                    Optional<PlotOwner> optPlotOwner = Optional.empty();
-                    if(resultSet.getString("owner") != null) optPlotOwner = getOptPlotOwner(conn, resultSet.getString("owner"));
+    //Cuts the box off on the side that keeps more of the area, until it no longer overlaps the given range. The range must not contain the block.
+    private static void cutAway(int[] box, int x, int z, int minX, int minZ, int maxX, int maxZ){
+        if(maxX < box[0] || minX > box[2] || maxZ < box[1] || minZ > box[3]) return;
+        int keptX = -1, keptZ = -1;
+        if(maxX < x) keptX = box[2] - maxX;
+        else if(minX > x) keptX = minX - box[0];
+        if(maxZ < z) keptZ = box[3] - maxZ;
+        else if(minZ > z) keptZ = minZ - box[1];
+        if(keptZ < 0 || (keptX >= 0 && keptX * (box[3] - box[1] + 1) >= keptZ * (box[2] - box[0] + 1))){
+            if(maxX < x) box[0] = maxX + 1;
+            else box[2] = minX - 1;
+        }else{
+            if(maxZ < z) box[1] = maxZ + 1;
+            else box[3] = minZ - 1;
+        }
+    }
 
-                    World plotWorld;
-                    if(plugin.game.getServer().getWorld(UUID.fromString(resultSet.getString("world"))).isPresent()){
-                        plotWorld = plugin.game.getServer().getWorld(UUID.fromString(resultSet.getString("world"))).get();
-                    }else{
-                        plotWorld = plugin.game.getServer().getWorlds().iterator().next();
-                    }
+    @Override
+    public boolean isAncestor(Plot ancestor, Plot plot) {
+        if(plotIndex == null || !plotIndex.get(plot.getId()).isPresent()) return PropertyService.super.isAncestor(ancestor, plot);
+        return plotIndex.getHierarchy().isAncestor(ancestor, plot);
+    }
 
-                    //All plots in bounding box are first a possible plot
-                    Plot possiblePlot = new Plot(resultSet.getInt("id"), optPlotOwner, plotWorld, resultSet.getString("vertices"), resultSet.getInt("depth"));
+    private Plot getIndexedPlot(Vector3d position, World world){
+        int x = position.getFloorX(), z = position.getFloorZ();
+        if(descentLookup){
+            Plot plot = plotIndex.getHierarchy().getDeepestPlot(world, x, z, Plot.wilderness(world));
+            tracer.mark(LookupTracer.Stage.CONTAINS);
+            return plot;
+        }
+        List<Plot> candidates = plotIndex.getCandidates(world, x, z);
+        tracer.mark(LookupTracer.Stage.CANDIDATES);
+        return getDeepestPlot(candidates, x, z, Plot.wilderness(world));
+    }
 
-                    //Only put them in the list if we are really inside.
-                    if(possiblePlot.contains(new PlotPoint(position.getFloorX(), position.getFloorZ()))){
-                        plotAndParents.put(resultSet.getInt("depth"), possiblePlot);
-                    }
+    private Plot getDeepestPlot(List<Plot> candidates, int x, int z, Plot wilderness){
+        Plot plot = wilderness;
+        int tested = 0;
+        for(Plot candidate : candidates){
+            if(x < candidate.getMinX() || z < candidate.getMinZ() || x > candidate.getMaxX() || z > candidate.getMaxZ()) continue;
+            //Deepest plot wins, it is always inside all of its parents. Only a plot that would win has to be tested.
+            if(PlotHierarchy.precedes(candidate, plot)){
+                tested++;
+                tracer.tested(candidate);
+                if(candidate.contains(x, z)) plot = candidate;
+            }
+        }
+        plugin.metrics.rowsScanned.add(candidates.size());
+        plugin.metrics.polygonsTested.add(tested);
+        tracer.candidates(candidates.size());
+        tracer.mark(LookupTracer.Stage.CONTAINS);
+        return plot;
+    }
+
+    private Plot getPlot(Connection conn, Vector3d position, World world){
+        ResultSet resultSet = null;
+        Plot plot = Plot.wilderness(world); // If everything else failes, wilderness.
+        try {
+            PreparedStatement stmt = DB.prepare(conn, SQL_PLOTS_AT_POSITION);
+            stmt.setString(1, world.getUniqueId().toString());
+            stmt.setInt(2, position.getFloorX());
+            stmt.setInt(3, position.getFloorZ());
+            stmt.setInt(4, position.getFloorX());
+            stmt.setInt(5, position.getFloorZ());
+            resultSet = stmt.executeQuery();
+            tracer.mark(LookupTracer.Stage.QUERY);
+            Map<Integer, Plot> plotAndParents = new TreeMap<>();
+
+            while (resultSet.next()){
+                //Saved or deleted but not yet written, the database row is outdated.
+                if(writeQueue.isPlotPending(resultSet.getInt("id"))) continue;
+                //All plots in bounding box are first a possible plot
+                Plot possiblePlot = readPlot(conn, resultSet);
+                plugin.metrics.rowsScanned.increment();
+                plugin.metrics.polygonsTested.increment();
+                tracer.mark(LookupTracer.Stage.ROWS);
+                tracer.candidates(1);
+                tracer.tested(possiblePlot);
+
+                //Only put them in the list if we are really inside.
+                boolean inside = possiblePlot.contains(position.getFloorX(), position.getFloorZ());
+                tracer.mark(LookupTracer.Stage.CONTAINS);
+                if(inside){
+                    plotAndParents.put(resultSet.getInt("depth"), possiblePlot);
                 }
-                for(Map.Entry<Integer,Plot> entry: plotAndParents.entrySet()){
-                    if(entry.getKey() > 1){
-                        if(plotAndParents.containsKey(entry.getKey() - 1)){
-                            entry.getValue().setParent(plotAndParents.get(entry.getKey() - 1));
-                        }else{
-                            plugin.logger.warn("Parent plot missing in Database request.");
-                        }
+            }
+            for(Plot pendingPlot : writeQueue.getPendingPlots()){
+                if(!pendingPlot.getWorld().getUniqueId().equals(world.getUniqueId()) || pendingPlot.getVertices().isEmpty()) continue;
+                if(pendingPlot.contains(position.getFloorX(), position.getFloorZ())) plotAndParents.put(pendingPlot.getDepth(), pendingPlot);
+            }
+            for(Map.Entry<Integer,Plot> entry: plotAndParents.entrySet()){
+                //Pending plots are the live ones and already know their parent.
+                if(entry.getKey() > 1 && !writeQueue.isPlotPending(entry.getValue().getId())){
+                    if(plotAndParents.containsKey(entry.getKey() - 1)){
+                        entry.getValue().setParent(plotAndParents.get(entry.getKey() - 1));
+                    }else{
+                        plugin.logger.warn("Parent plot missing in Database request.");
                     }
-                    plot = entry.getValue(); //As they are sorted by depth, in the end this will be the deepest plot, containing all its parents
                 }
-
-            } //if not, then no Plot there.
+                plot = entry.getValue(); //As they are sorted by depth, in the end this will be the deepest plot, containing all its parents
+            }
+            tracer.mark(LookupTracer.Stage.PARENTS); //If nothing is left, then no Plot there.
 
         }catch (SQLException e) {
             plugin.logger.error("SQLException in load");
         }finally{
             try {
                 if (resultSet != null) resultSet.close();
-                if (stmt != null) stmt.close();
             }catch (SQLException e){
                 plugin.logger.error("SQLException: Could not close ResultSet");
             }
@@ -148,7 +659,9 @@ public class PlotPropertyService implements PropertyService {
         if(ownerString.startsWith("P:")){
             optPlotOwner = Optional.of( new PlotOwner(UUID.fromString(ownerString.substring(2))) );
         }else if(ownerString.startsWith("G:")){
-            Optional<Group> optGroup = getGroup(conn, ownerString.substring(2));
+            Optional<Group> optGroup;
+            if(groupRegistry != null) optGroup = groupRegistry.get(ownerString.substring(2));
+            else optGroup = getGroup(conn, ownerString.substring(2));
             if(optGroup.isPresent()){
                 optPlotOwner = Optional.of(new PlotOwner(optGroup.get()));
             }
@@ -157,40 +670,24 @@ public class PlotPropertyService implements PropertyService {
     }
 
     private Optional<Plot> getPlot(Connection conn, int id){
-        String sql = "SELECT * FROM plot WHERE id = " + id + ";";
+        //Not yet written, the database would still have the old plot or even the deleted one.
+        if(writeQueue.isPlotPending(id)) return writeQueue.getPendingPlot(id);
         Optional<Plot> optPlot = Optional.empty();
         try {
-            PreparedStatement stmt = conn.prepareStatement(sql);
+            PreparedStatement stmt = DB.prepare(conn, SQL_PLOT_BY_ID);
+            stmt.setInt(1, id);
             ResultSet resultSet = stmt.executeQuery();
-            if(resultSet.isBeforeFirst()){
-                if (resultSet.next()) {
-                    Optional<PlotOwner> optPlotOwner = getOptPlotOwner(conn, resultSet.getString("owner"));
-
-                    World plotWorld;
-                    if(plugin.game.getServer().getWorld(UUID.fromString(resultSet.getString("world"))).isPresent()){
-                        plotWorld = plugin.game.getServer().getWorld(UUID.fromString(resultSet.getString("world"))).get();
-                    }else{
-                        plotWorld = plugin.game.getServer().getWorlds().iterator().next();
-                    }
-                    Optional<Plot> optParentPlot = Optional.empty();
-                    int parentId = resultSet.getInt("parent");
-                    if(parentId > 0) optParentPlot = getPlot(conn, parentId);
-                    optPlot = Optional.of(new Plot(id,
-                            optPlotOwner,
-                            plotWorld,
-                            resultSet.getString("vertices"),
-                            new PlotPoint(resultSet.getInt("centroidX"), resultSet.getInt("centroidZ")),
-                            resultSet.getInt("depth"),
-                            optParentPlot,
-                            resultSet.getInt("minX"),
-                            resultSet.getInt("minZ"),
-                            resultSet.getInt("maxX"),
-                            resultSet.getInt("maxZ")
-                    ));
-                }
+            int parentId = 0;
+            if(resultSet.next()) {
+                parentId = resultSet.getInt("parent");
+                optPlot = Optional.of(readPlot(conn, resultSet));
             }
             resultSet.close();
-            stmt.close();
+            //The parent query reuses the same statement, so only after this row is done.
+            if(optPlot.isPresent() && parentId > 0){
+                Optional<Plot> optParentPlot = getPlot(conn, parentId);
+                if(optParentPlot.isPresent()) optPlot.get().setParent(optParentPlot.get());
+            }
         }catch (SQLException e) {
             plugin.logger.error("SQLException in load");
         }
@@ -198,62 +695,6 @@ public class PlotPropertyService implements PropertyService {
     }
 
 
-    public boolean savePlot(Connection conn, Plot plot){
-        boolean success;
-        String sql = "SELECT * FROM primePlot WHERE id = " + plot.getId() + " ;";
-        try {
-            PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_UPDATABLE);
-            ResultSet resultSet = stmt.executeQuery();
-            Boolean insert = false;
-            if(!resultSet.isBeforeFirst()) insert = true;
-
-            if(insert){
-                resultSet.moveToInsertRow();
-            }else{
-                resultSet.next();
-            }
-            resultSet.updateInt("id", plot.getId());
-
-            if(plot.getOwner().isPresent()){
-                resultSet.updateString("owner", plot.getOwner().get().serialize());
-            }else{
-                resultSet.updateNull("owner");
-            }
-
-            resultSet.updateString("world", plot.getWorld().getUniqueId().toString());
-           // resultSet.updateString("actualVertices", plot.getVerticesString(plot.getActualPoints()));
-            resultSet.updateString("vertices", plot.getVerticesString());
-
-            resultSet.updateInt("centroidX", (int) Math.floor(plot.getCentroid().getX()));
-            resultSet.updateInt("centroidZ", (int) Math.floor(plot.getCentroid().getZ()));
-            if(plot.getParent().isPresent())
-                resultSet.updateInt("parent", plot.getParent().get().getId());
-            else
-                resultSet.updateNull("parent");
-            resultSet.updateInt("depth", plot.getDepth());
-
-            if(plot.getVertices().size() > 0){
-                resultSet.updateInt("minX", plot.getMinX());
-                resultSet.updateInt("minZ", plot.getMinZ());
-                resultSet.updateInt("maxX", plot.getMaxX());
-                resultSet.updateInt("maxZ", plot.getMaxZ());
-            }
-            if(insert){
-                resultSet.insertRow();
-                resultSet.moveToCurrentRow();
-            }else{
-                resultSet.updateRow();
-            }
-            resultSet.close();
-            stmt.close();
-            success = true;
-        }catch (SQLException e) {
-            plugin.logger.error("SQLException in save");
-            success = false;
-        }
-        return success;
-    }
-
     private int getAutoIncrement(Connection conn, String table, String column) throws SQLException {
         String sql = "SELECT MAX(" + column + ") as max_val FROM " + table + ";";
         int autoIncrement = 0;
@@ -269,104 +710,73 @@ public class PlotPropertyService implements PropertyService {
 
 
     public Plot createPlot(Optional<PlotOwner> optPlotOwner, World world, Plot parent){
-        final Connection conn = DB.getConnection();
         Plot newPlot = null;
-        int newId = 0;
-        try {
-            newId = getAutoIncrement(conn, "primePlot", "id");
-        }catch (SQLException e) {
-            plugin.logger.error("SQLException getting auto increment.");
-        }
-        if (newId > 0) {
-            newPlot = new Plot(newId, optPlotOwner, world, parent);
-            savePlot(conn, newPlot);
+        if (nextPlotId.get() > 0) {
+            newPlot = new Plot(nextPlotId.getAndIncrement(), optPlotOwner, world, parent);
+            writeQueue.savePlot(newPlot);
         }
-        try {
-            conn.close();
-        } catch (SQLException e) { plugin.logger.info("Could not close connection"); }
         return newPlot;
     }
 
     @Override
     public Optional<Group> getGroup(String name) {
+        if(groupRegistry != null) return groupRegistry.get(name);
         final Connection conn = DB.getConnection();
+        if(conn == null) return Optional.empty();
         Optional<Group> optPlot = getGroup(conn, name);
-        try {
-            conn.close();
-        } catch (SQLException e) { plugin.logger.info("Could not close connection"); }
+        DB.releaseConnection(conn);
         return optPlot;
     }
 
     private Optional<Group> getGroup(Connection conn, String name){
-        String sql = "SELECT * FROM primeGroup WHERE name = '" + name + "';";
+        Optional<String> optPendingUsers = writeQueue.getPendingGroupUsers(name);
+        if(optPendingUsers.isPresent()){
+            return Optional.of(new Group(name, parseUsers(optPendingUsers.get()), Optional.of(TextColors.AQUA)));
+        }
         Optional<Group> optGroup = Optional.empty();
         try {
-            PreparedStatement stmt = conn.prepareStatement(sql);
+            PreparedStatement stmt = DB.prepare(conn, SQL_GROUP_BY_NAME);
+            stmt.setString(1, name);
             ResultSet resultSet = stmt.executeQuery();
             if(resultSet.isBeforeFirst()){
                 if (resultSet.next()) {
-                    Map<UUID, Rank> users = new HashMap<>();
-                    String serializedGroup = resultSet.getString("users");
-                    for (String part: serializedGroup.split("\\|")){
-                        if(part.contains(",")){
-                            users.put(UUID.fromString(part.split(",")[0]), Rank.valueOf(part.split(",")[1]));
-                        }
-                    }
                     optGroup = Optional.of(new Group(resultSet.getString("name"),
-                            users,
+                            parseUsers(resultSet.getString("users")),
                             Optional.of(TextColors.AQUA)
                     ));
                 }
             }
             resultSet.close();
-            stmt.close();
         }catch (SQLException e) {
             plugin.logger.error("SQLException in load");
         }
         return optGroup;
     }
 
-    @Override
-    public boolean deletePlot(int id) {
-        boolean success;
-        final Connection conn = DB.getConnection();
-        success = deletePlot(conn, id);
-        try {
-            conn.close();
-        } catch (SQLException e) { plugin.logger.info("Could not close connection"); }
-        return success;
+    private Map<UUID, Rank> parseUsers(String serializedGroup){
+        Map<UUID, Rank> users = new HashMap<>();
+        for (String part: serializedGroup.split("\\|")){
+            if(part.contains(",")){
+                users.put(UUID.fromString(part.split(",")[0]), Rank.valueOf(part.split(",")[1]));
+            }
+        }
+        return users;
     }
 
-    private boolean deletePlot(Connection conn, int id) {
-        boolean success;
-        String sql = "DELETE FROM primePlot WHERE id = " + id + " ;";
-        try {
-            PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_UPDATABLE);
-            stmt.executeUpdate();
-            //ResultSet resultSet = stmt.executeQuery();
-            //resultSet.deleteRow();
-            //resultSet.close();
-            stmt.close();
-            success = true;
-        }catch (SQLException e) {
-            plugin.logger.error("SQLException in delete (" + sql + ")");
-            success = false;
-        }
-        return success;
+    @Override
+    public boolean deletePlot(int id) {
+        if(!writeQueue.deletePlot(id)) return false;
+        updateIndex(id, null);
+        return true;
     }
 
     @Override
     public Group createGroup(String name, UUID founderUUID) {
-        final Connection conn = DB.getConnection();
-        Optional<Group> existingGroup = getGroup(conn, name); //This gets done twice (in command and here), revisit later.
-        if(existingGroup.isPresent()){
+        if(name.length() > Group.MAX_NAME_LENGTH || getGroup(name).isPresent()){
             return null;
         }
         Group newGroup = new Group(name, founderUUID);
-        saveGroup(conn, newGroup);
-        try {
-            conn.close();
-        } catch (SQLException e) { plugin.logger.info("Could not close connection"); }
+        if(!saveGroup(newGroup)) return null;
         return newGroup;
     }
 
@@ -377,51 +787,19 @@ public class PlotPropertyService implements PropertyService {
 
     @Override
     public boolean saveGroup(Group group) {
-        boolean success;
-        final Connection conn = DB.getConnection();
-        success = saveGroup(conn, group);
-        try {
-            conn.close();
-        } catch (SQLException e) { plugin.logger.info("Could not close connection"); }
-        return success;
-    }
-
-    private boolean saveGroup(Connection conn, Group group){
-        boolean success;
-        String sql = "SELECT * FROM primeGroup WHERE name = '" + group.getName() + "' ;";
-        try {
-            PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_UPDATABLE);
-            ResultSet resultSet = stmt.executeQuery();
-            Boolean insert = false;
-            if(!resultSet.isBeforeFirst()) insert = true;
-            if(insert){
-                resultSet.moveToInsertRow();
-            }else{
-                resultSet.next();
-            }
-            resultSet.updateString("name", group.getName());
-            resultSet.updateString("users", group.getSerializedUsers());
-
-            if(group.getChatColor().isPresent()){
-                resultSet.updateString("chatColor", group.getChatColor().get().toString());
-            }else{
-                resultSet.updateNull("chatColor");
+        long start = plugin.metrics.start();
+        if(!writeQueue.saveGroup(group)) return false;
+        if(groupRegistry != null){
+            Optional<Group> optPrevious = groupRegistry.put(group);
+            //Only a group instance from outside the registry leaves plots behind with an old copy.
+            if(optPrevious.isPresent() && optPrevious.get() != group){
+                updateIndexGroup(group);
             }
-
-            if(insert){
-                resultSet.insertRow();
-                resultSet.moveToCurrentRow();
-            }else{
-                resultSet.updateRow();
-            }
-            resultSet.close();
-            stmt.close();
-            success = true;
-        }catch (SQLException e) {
-            plugin.logger.error("SQLException in save");
-            e.printStackTrace();
-            success = false;
+        }else{
+            updateIndexGroup(group);
         }
-        return success;
+        plugin.metrics.groupSaves.increment();
+        plugin.metrics.stop(plugin.metrics.groupSaveTime, start);
+        return true;
     }
 }
@@ -0,0 +1,157 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//Region quadtree over the bounding boxes of the plots of one world.
+//Every plot sits in the smallest node that still fully contains its box, so big plots stay near the root.
+class PlotQuadTree {
+
+    private static final int ROOT_SIZE = 1 << 26; //Covers the whole 30 million block world border.
+    private static final int MIN_SIZE = 16;
+    private static final int NODE_CAPACITY = 8;
+
+    private final Node root = new Node(-ROOT_SIZE / 2, -ROOT_SIZE / 2, ROOT_SIZE);
+    private final Map<Integer, Node> nodeById = new HashMap<>();
+
+    public void insert(Plot plot){
+        remove(plot.getId());
+        Node node = root;
+        while(node.children != null){
+            Node child = node.childContaining(plot);
+            if(child == null) break;
+            node = child;
+        }
+        node.plots.add(plot);
+        nodeById.put(plot.getId(), node);
+        if(node.children == null && node.plots.size() > NODE_CAPACITY && node.size > MIN_SIZE){
+            split(node);
+        }
+    }
+
+    public boolean remove(int id){
+        Node node = nodeById.remove(id);
+        if(node == null) return false;
+        for(int i = 0; i < node.plots.size(); i++){
+            if(node.plots.get(i).getId() == id){
+                node.plots.remove(i);
+                break;
+            }
+        }
+        return true;
+    }
+
+    public int size(){
+        return nodeById.size();
+    }
+
+    //Adds every plot whose bounding box contains the block to the output list.
+    public void query(int x, int z, List<Plot> output){
+        Node node = root;
+        while(node != null){
+            for(Plot plot : node.plots){
+                if(x >= plot.getMinX() && x <= plot.getMaxX() && z >= plot.getMinZ() && z <= plot.getMaxZ()){
+                    output.add(plot);
+                }
+            }
+            if(node.children == null || !node.contains(x, z)) break;
+            node = node.children[node.quadrant(x, z)];
+        }
+    }
+
+    //Adds every plot whose bounding box overlaps the given area to the output list.
+    public void query(int minX, int minZ, int maxX, int maxZ, List<Plot> output){
+        query(root, minX, minZ, maxX, maxZ, output);
+    }
+
+    private void query(Node node, int minX, int minZ, int maxX, int maxZ, List<Plot> output){
+        for(Plot plot : node.plots){
+            if(minX <= plot.getMaxX() && maxX >= plot.getMinX() && minZ <= plot.getMaxZ() && maxZ >= plot.getMinZ()){
+                output.add(plot);
+            }
+        }
+        if(node.children == null) return;
+        for(Node child : node.children){
+            if(minX < child.x + child.size && maxX >= child.x && minZ < child.z + child.size && maxZ >= child.z){
+                query(child, minX, minZ, maxX, maxZ, output);
+            }
+        }
+    }
+
+    private void split(Node node){
+        int half = node.size / 2;
+        node.children = new Node[]{
+                new Node(node.x, node.z, half),
+                new Node(node.x + half, node.z, half),
+                new Node(node.x, node.z + half, half),
+                new Node(node.x + half, node.z + half, half)
+        };
+        List<Plot> remaining = new ArrayList<>();
+        for(Plot plot : node.plots){
+            Node child = node.childContaining(plot);
+            if(child != null){
+                child.plots.add(plot);
+                nodeById.put(plot.getId(), child);
+            }else{
+                remaining.add(plot);
+            }
+        }
+        node.plots = remaining;
+        for(Node child : node.children){
+            if(child.plots.size() > NODE_CAPACITY && child.size > MIN_SIZE) split(child);
+        }
+    }
+
+    private static class Node {
+        final int x, z, size;
+        List<Plot> plots = new ArrayList<>();
+        Node[] children;
+
+        Node(int x, int z, int size) {
+            this.x = x;
+            this.z = z;
+            this.size = size;
+        }
+
+        boolean contains(int px, int pz){
+            return px >= x && pz >= z && px - x < size && pz - z < size;
+        }
+
+        int quadrant(int px, int pz){
+            int half = size / 2;
+            return (px - x >= half ? 1 : 0) | (pz - z >= half ? 2 : 0);
+        }
+
+        Node childContaining(Plot plot){
+            if(!contains(plot.getMinX(), plot.getMinZ()) || !contains(plot.getMaxX(), plot.getMaxZ())) return null;
+            int quadrant = quadrant(plot.getMinX(), plot.getMinZ());
+            if(quadrant != quadrant(plot.getMaxX(), plot.getMaxZ())) return null;
+            return children[quadrant];
+        }
+    }
+}
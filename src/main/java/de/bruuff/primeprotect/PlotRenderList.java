@@ -0,0 +1,123 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import java.util.Arrays;
+import java.util.List;
+
+//Particle positions of a plot border, computed once per border and shared by everyone viewing the plot.
+//Points are grouped by chunk, so viewers can skip whole chunks out of their view.
+final class PlotRenderList {
+
+    private final double[] xs, zs;
+    private final boolean[] pillars; //Vertices are shown as a pillar instead of a single particle
+    private final int[] bucketStart; //First point of each chunk bucket, plus the end
+    private final int[] bucketX, bucketZ; //Chunk of each bucket
+
+    PlotRenderList(PlotBorder border, List<PlotPoint> vertices) {
+        int borderPoints = border.size() * 2; //Start and middle of each edge
+        int size = borderPoints + vertices.size();
+        double[] x = new double[size], z = new double[size];
+        for(int i = 0; i < border.size(); i++){
+            x[2 * i] = border.getStartX(i);
+            z[2 * i] = border.getStartZ(i);
+            x[2 * i + 1] = (border.getStartX(i) + border.getEndX(i)) / 2.0;
+            z[2 * i + 1] = (border.getStartZ(i) + border.getEndZ(i)) / 2.0;
+        }
+        for(int i = 0; i < vertices.size(); i++){
+            x[borderPoints + i] = vertices.get(i).getX() + 0.5;
+            z[borderPoints + i] = vertices.get(i).getZ() + 0.5;
+        }
+
+        Integer[] order = new Integer[size];
+        long[] chunks = new long[size];
+        for(int i = 0; i < size; i++){
+            order[i] = i;
+            chunks[i] = PlotChunkCache.key((int) Math.floor(x[i]) >> 4, (int) Math.floor(z[i]) >> 4);
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(chunks[a], chunks[b]));
+
+        xs = new double[size];
+        zs = new double[size];
+        pillars = new boolean[size];
+        int[] starts = new int[size + 1];
+        int buckets = 0;
+        for(int i = 0; i < size; i++){
+            int point = order[i];
+            xs[i] = x[point];
+            zs[i] = z[point];
+            pillars[i] = point >= borderPoints;
+            if(i == 0 || chunks[point] != chunks[order[i - 1]]) starts[buckets++] = i;
+        }
+        starts[buckets] = size;
+        bucketStart = Arrays.copyOf(starts, buckets + 1);
+        bucketX = new int[buckets];
+        bucketZ = new int[buckets];
+        for(int b = 0; b < buckets; b++){
+            bucketX[b] = (int) Math.floor(xs[bucketStart[b]]) >> 4;
+            bucketZ[b] = (int) Math.floor(zs[bucketStart[b]]) >> 4;
+        }
+    }
+
+    public int size(){
+        return xs.length;
+    }
+
+    public int getBucketCount(){
+        return bucketX.length;
+    }
+
+    public int getBucketStart(int bucket){
+        return bucketStart[bucket];
+    }
+
+    public int getBucketEnd(int bucket){
+        return bucketStart[bucket + 1];
+    }
+
+    //Bucket holding the point.
+    public int getBucket(int point){
+        int bucket = Arrays.binarySearch(bucketStart, point);
+        return bucket >= 0 ? bucket : -bucket - 2;
+    }
+
+    //True if any part of the bucket's chunk is within the radius.
+    public boolean isBucketInRange(int bucket, double x, double z, double radius){
+        double nearestX = Math.max(bucketX[bucket] << 4, Math.min(x, (bucketX[bucket] << 4) + 16));
+        double nearestZ = Math.max(bucketZ[bucket] << 4, Math.min(z, (bucketZ[bucket] << 4) + 16));
+        return (nearestX - x) * (nearestX - x) + (nearestZ - z) * (nearestZ - z) <= radius * radius;
+    }
+
+    public double getX(int point){
+        return xs[point];
+    }
+
+    public double getZ(int point){
+        return zs[point];
+    }
+
+    public boolean isPillar(int point){
+        return pillars[point];
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+//Plot polygon compiled for point lookups. The z values of the vertices cut the plane into horizontal slabs.
+//Inside a slab no border line starts, ends or crosses another one, so its lines can be sorted once and a lookup is two binary searches.
+//Everything is integer math, so points on the border are detected exactly and count as inside.
+final class PlotShape {
+
+    private final int[] lowX, lowZ, highX, highZ; //Non horizontal border lines, low end first
+    private final int[] rows;                     //Distinct vertex z, ascending
+    private final int[][] slabLines;              //Per slab from rows[i] to rows[i+1]: the lines spanning it, sorted by x
+    private final int[][] rowBorders;             //Per row: sorted, merged [from, to] x intervals of the border lying on it
+
+    PlotShape(List<PlotPoint> vertices) {
+        int n = vertices.size();
+        int[] xs = new int[n], zs = new int[n];
+        TreeSet<Integer> rowSet = new TreeSet<>();
+        for(int i = 0; i < n; i++){
+            xs[i] = vertices.get(i).getX();
+            zs[i] = vertices.get(i).getZ();
+            rowSet.add(zs[i]);
+        }
+        rows = new int[rowSet.size()];
+        int r = 0;
+        for(int z : rowSet) rows[r++] = z;
+
+        List<int[]> lines = new ArrayList<>();
+        List<List<int[]>> rowIntervals = new ArrayList<>();
+        for(int i = 0; i < rows.length; i++) rowIntervals.add(new ArrayList<>());
+        for(int i = 0; i < n; i++){
+            int j = (i + 1) % n;
+            rowIntervals.get(Arrays.binarySearch(rows, zs[i])).add(new int[]{xs[i], xs[i]});
+            if(zs[i] == zs[j]){
+                rowIntervals.get(Arrays.binarySearch(rows, zs[i])).add(new int[]{Math.min(xs[i], xs[j]), Math.max(xs[i], xs[j])});
+            }else if(zs[i] < zs[j]){
+                lines.add(new int[]{xs[i], zs[i], xs[j], zs[j]});
+            }else{
+                lines.add(new int[]{xs[j], zs[j], xs[i], zs[i]});
+            }
+        }
+        lowX = new int[lines.size()];
+        lowZ = new int[lines.size()];
+        highX = new int[lines.size()];
+        highZ = new int[lines.size()];
+        for(int i = 0; i < lines.size(); i++){
+            lowX[i] = lines.get(i)[0];
+            lowZ[i] = lines.get(i)[1];
+            highX[i] = lines.get(i)[2];
+            highZ[i] = lines.get(i)[3];
+        }
+
+        slabLines = new int[rows.length][];
+        for(int s = 0; s < rows.length; s++){
+            List<Integer> spanning = new ArrayList<>();
+            if(s < rows.length - 1){
+                for(int i = 0; i < lowZ.length; i++){
+                    if(lowZ[i] <= rows[s] && highZ[i] >= rows[s + 1]) spanning.add(i);
+                }
+                double middle = (rows[s] + rows[s + 1]) / 2.0;
+                spanning.sort((a, b) -> Double.compare(xAt(a, middle), xAt(b, middle)));
+            }
+            slabLines[s] = new int[spanning.size()];
+            for(int i = 0; i < spanning.size(); i++) slabLines[s][i] = spanning.get(i);
+        }
+
+        rowBorders = new int[rows.length][];
+        for(int i = 0; i < rows.length; i++){
+            List<int[]> intervals = rowIntervals.get(i);
+            intervals.sort((a, b) -> Integer.compare(a[0], b[0]));
+            List<int[]> merged = new ArrayList<>();
+            for(int[] interval : intervals){
+                int[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                if(last != null && interval[0] <= last[1]) last[1] = Math.max(last[1], interval[1]);
+                else merged.add(interval);
+            }
+            rowBorders[i] = new int[merged.size() * 2];
+            for(int k = 0; k < merged.size(); k++){
+                rowBorders[i][2 * k] = merged.get(k)[0];
+                rowBorders[i][2 * k + 1] = merged.get(k)[1];
+            }
+        }
+    }
+
+    private PlotShape(int[] lowX, int[] lowZ, int[] highX, int[] highZ, int[] rows, int[][] slabLines, int[][] rowBorders) {
+        this.lowX = lowX;
+        this.lowZ = lowZ;
+        this.highX = highX;
+        this.highZ = highZ;
+        this.rows = rows;
+        this.slabLines = slabLines;
+        this.rowBorders = rowBorders;
+    }
+
+    //Stored next to the plot, so loading it needs no sorting.
+    public byte[] toBytes(){
+        int size = 4 * (5 + lowX.length * 4 + rows.length * 3);
+        for(int i = 0; i < rows.length; i++) size += 4 * (slabLines[i].length + rowBorders[i].length);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        writeArray(buffer, lowX);
+        writeArray(buffer, lowZ);
+        writeArray(buffer, highX);
+        writeArray(buffer, highZ);
+        writeArray(buffer, rows);
+        for(int[] lines : slabLines) writeArray(buffer, lines);
+        for(int[] borders : rowBorders) writeArray(buffer, borders);
+        return buffer.array();
+    }
+
+    public static PlotShape fromBytes(byte[] data){
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int[] lowX = readArray(buffer), lowZ = readArray(buffer), highX = readArray(buffer), highZ = readArray(buffer);
+        int[] rows = readArray(buffer);
+        int[][] slabLines = new int[rows.length][];
+        for(int i = 0; i < rows.length; i++) slabLines[i] = readArray(buffer);
+        int[][] rowBorders = new int[rows.length][];
+        for(int i = 0; i < rows.length; i++) rowBorders[i] = readArray(buffer);
+        return new PlotShape(lowX, lowZ, highX, highZ, rows, slabLines, rowBorders);
+    }
+
+    private static void writeArray(ByteBuffer buffer, int[] array){
+        buffer.putInt(array.length);
+        for(int value : array) buffer.putInt(value);
+    }
+
+    private static int[] readArray(ByteBuffer buffer){
+        int[] array = new int[buffer.getInt()];
+        for(int i = 0; i < array.length; i++) array[i] = buffer.getInt();
+        return array;
+    }
+
+    public boolean contains(int x, int z){
+        int slab = Arrays.binarySearch(rows, z);
+        if(slab >= 0){
+            if(onRowBorder(rowBorders[slab], x)) return true;
+        }else{
+            slab = -slab - 2; //Slab below the insertion point
+            if(slab < 0) return false;
+        }
+        int[] spanning = slabLines[slab];
+        //Count the lines left of the point. Their order inside the slab is fixed, so that count is a binary search.
+        int low = 0, high = spanning.length;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            long side = side(spanning[middle], x, z);
+            if(side == 0) return true;
+            if(side > 0) low = middle + 1;
+            else high = middle;
+        }
+        return (low & 1) == 1;
+    }
+
+    //Positive if the point lies right of the line, zero if on it.
+    private long side(int line, int x, int z){
+        return (long) (x - lowX[line]) * (highZ[line] - lowZ[line]) - (long) (highX[line] - lowX[line]) * (z - lowZ[line]);
+    }
+
+    private double xAt(int line, double z){
+        return lowX[line] + (highX[line] - lowX[line]) * (z - lowZ[line]) / (highZ[line] - lowZ[line]);
+    }
+
+    private static boolean onRowBorder(int[] intervals, int x){
+        int low = 0, high = intervals.length / 2;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(intervals[2 * middle + 1] < x) low = middle + 1;
+            else high = middle;
+        }
+        return low < intervals.length / 2 && intervals[2 * low] <= x;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//Shape checks working on vertex snapshots only, so they can run off the main thread.
+final class PlotValidator {
+
+    //Up to this many vertices of plot and parent together the check is quick enough to just run it right away.
+    static final int SYNC_VERTEX_LIMIT = 64;
+
+    private PlotValidator() {}
+
+    //No border line of the plot may cross another line of the plot or of its parent.
+    public static boolean isValidShape(List<PlotPoint> vertices, List<PlotPoint> parentVertices){
+        List<PlotLine> plotLines = Plot.getBorderLines(vertices);
+        List<PlotLine> borderLines = new ArrayList<>(plotLines);
+        borderLines.addAll(Plot.getBorderLines(parentVertices));
+        SegmentIndex index = new SegmentIndex(borderLines);
+        for(PlotLine line : plotLines){
+            if(index.crossesAny(line)) return false;
+        }
+        return true;
+    }
+}
@@ -24,6 +24,7 @@
 package de.bruuff.primeprotect;
 
 import com.flowpowered.math.vector.Vector3d;
+import com.flowpowered.math.vector.Vector3i;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import ninja.leaping.configurate.ConfigurationOptions;
@@ -39,8 +40,7 @@ import org.spongepowered.api.command.args.GenericArguments;
 import org.spongepowered.api.command.source.ConsoleSource;
 import org.spongepowered.api.command.spec.CommandSpec;
 import org.spongepowered.api.config.DefaultConfig;
-import org.spongepowered.api.effect.particle.ParticleEffect;
-import org.spongepowered.api.effect.particle.ParticleTypes;
+import org.spongepowered.api.data.Transaction;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.event.Listener;
@@ -48,6 +48,8 @@ import org.spongepowered.api.event.block.ChangeBlockEvent;
 import org.spongepowered.api.event.entity.DisplaceEntityEvent;
 import org.spongepowered.api.event.entity.InteractEntityEvent;
 import org.spongepowered.api.event.game.state.GameStartingServerEvent;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
+import org.spongepowered.api.event.network.ClientConnectionEvent;
 import org.spongepowered.api.plugin.Plugin;
 import org.spongepowered.api.scheduler.Task;
 import org.spongepowered.api.scoreboard.Scoreboard;
@@ -65,11 +67,14 @@ import org.spongepowered.api.world.World;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Plugin(id = "PrimeProtect", name = "PrimeProtect", version = "0.1")
 public class PrimeProtect {
@@ -80,11 +85,14 @@ public class PrimeProtect {
     @Inject
     public Logger logger;
 
-    public Map<Player, Plot> showPlotTicks = new HashMap<>();
+    public final SessionRegistry sessions = new SessionRegistry();
+    public final Metrics metrics = new Metrics();
     Task showPlotTickTask;
-    public Map<Player, Plot> playersEditingPlots = new HashMap<>();
+    Task metricsTask;
+    private MetricsReporter metricsReporter;
 
     public PropertyService propertyService;
+    private PlotPropertyService plotPropertyService;
     public UserStorageService userStorageService;
 
     public PropertyService getPropertyService() {
@@ -105,8 +113,9 @@ public class PrimeProtect {
         runShowPlotTask();
 
         //Initializing plot management
+        plotPropertyService = new PlotPropertyService(this);
         try {
-            game.getServiceManager().setProvider(this, PropertyService.class, new PlotPropertyService(this));
+            game.getServiceManager().setProvider(this, PropertyService.class, plotPropertyService);
         } catch (ProviderExistsException e) {
             logger.error("PropertyProvider already exists.");
             e.printStackTrace();
@@ -118,6 +127,7 @@ public class PrimeProtect {
         }else{
             logger.error("Could not get PropertyService.");
         }
+        runMetricsTask();
 
         Optional<UserStorageService> optUserStorageService= game.getServiceManager().provide(UserStorageService.class);
         if(optUserStorageService.isPresent()){
@@ -128,6 +138,11 @@ public class PrimeProtect {
 
     }
 
+    @Listener
+    public void onStop(GameStoppingServerEvent event) {
+        if(plotPropertyService != null) plotPropertyService.shutdown(); //Last chance to write queued plot changes.
+    }
+
     private void loadConfig(){
         //Main plot config
         ConfigurationLoader<CommentedConfigurationNode> configManager = HoconConfigurationLoader.builder().setPath(defaultConfig.toPath()).build();
@@ -136,6 +151,17 @@ public class PrimeProtect {
                 if(defaultConfig.createNewFile()){
                     mainConfig = configManager.createEmptyNode(ConfigurationOptions.defaults());
                     mainConfig.getNode("plots").setComment("The main config file will later hold general configuration like maximum plot sizes, economy support and stuff like that. Currently empty.");
+                    mainConfig.getNode("database", "poolSize").setValue(4).setComment("Number of database connections kept open for plot and group queries.");
+                    mainConfig.getNode("database", "flushInterval").setValue(500).setComment("Milliseconds between writes of changed plots and groups to the database.");
+                    mainConfig.getNode("visualizer", "viewRadius").setValue(64).setComment("Border particles further away from the player than this many blocks are not shown.");
+                    mainConfig.getNode("visualizer", "particlesPerTick").setValue(400).setComment("Maximum number of border particles sent per tick, shared between all players viewing a plot.");
+                    mainConfig.getNode("metrics", "timed").setValue(true).setComment("Measure how long lookups, permission checks, saves and the border particles take. Counters are kept either way.");
+                    mainConfig.getNode("metrics", "dumpInterval").setValue(300).setComment("Seconds between writing the metrics to the log and starting over. 0 turns it off, /prime stats then shows everything since the start.");
+                    mainConfig.getNode("metrics", "csv").setValue("metrics.csv").setComment("File next to this config the metrics are appended to with every dump. Leave empty for log only.");
+                    mainConfig.getNode("plots", "trace", "enabled").setValue(false).setComment("Time each plot lookup by stage (database connection, query, rows, owners, polygon test, parents) and log slow ones. Costs a little time on every lookup.");
+                    mainConfig.getNode("plots", "trace", "slowMillis").setValue(50).setComment("Traced lookups taking longer than this many milliseconds are logged.");
+                    mainConfig.getNode("plots", "warmupThreads").setValue(0).setComment("Threads building plot shapes while all plots are loaded on startup. 0 uses all cores. Lookups go to the database until loading is done.");
+                    mainConfig.getNode("plots", "lookup").setValue("index").setComment("How plots are found at a position. 'index' tests every plot overlapping the position, 'descent' goes down from the top level plots and only tests the children of the plot found so far. Use 'descent' for deeply nested plots.");
 
                     configManager.save(mainConfig);
                 }
@@ -179,6 +205,7 @@ public class PrimeProtect {
 
                     localizationConfig.getNode("group", "new", "SUCCESS").setValue("New Group created.");
                     localizationConfig.getNode("group", "new", "FAILURE_DATABASE_GROUP").setValue("Could not create group. (Group already exists)");
+                    localizationConfig.getNode("group", "new", "FAILURE_WRONG_USAGE").setValue("Could not create group. (Name longer than 32 characters)");
                     localizationConfig.getNode("group", "new", "FAILURE").setValue("Could not create group. (Unknown reason)");
                     localizationConfig.getNode("group", "add", "SUCCESS").setValue("Player %player% added to group %group%.");
                     localizationConfig.getNode("group", "add", "FAILURE_ALREADY_THERE").setValue("Could not add player %player% to group %group%. (Player already in group)");
@@ -250,10 +277,11 @@ public class PrimeProtect {
                         Map<String, String> dictionary = new HashMap<>();
                         dictionary.put("player", player.getName());
                         Response response;
+                        PlayerSession session = sessions.get(player);
 
-                        if(playersEditingPlots.containsKey(player)) {
+                        if(session.getEditingPlot().isPresent()) {
                             //We dont need this anymore (Not that it would hurt as it has no area)
-                            this.getPropertyService().deletePlot(playersEditingPlots.get(player).getId());
+                            this.getPropertyService().deletePlot(session.getEditingPlot().get().getId());
                         }
 
                         Plot parentPlot = this.getPropertyService().getPlot(player.getLocation()); // Worst case: Wilderness
@@ -269,8 +297,7 @@ public class PrimeProtect {
                                 plot = this.getPropertyService().createPlot(Optional.empty(), player.getWorld(), parentPlot);
                                 dictionary.put("plot", plot.getDisplayName());
                                 response = plot.addPoint(new PlotPoint(player.getLocation().getBlockX(), player.getLocation().getBlockZ()));
-                                showPlotTicks.put(player, plot);
-                                playersEditingPlots.put(player, plot);
+                                session.startEditing(plot);
                                 this.updateScoreboard(plot, player);
                             }else response = Response.FAILURE_NO_PERMISSION; //Player has not the right permission to claim here.
                         }else response = Response.FAILURE_WRONG_USAGE; //Only in vacant plots, so there has to be already one.
@@ -292,10 +319,10 @@ public class PrimeProtect {
                         dictionary.put("player", player.getName());
                         Response response;
 
-                        if(playersEditingPlots.containsKey(player)) {
-                            this.getPropertyService().deletePlot(playersEditingPlots.get(player).getId());
-                            playersEditingPlots.remove(player);
-                            showPlotTicks.remove(player);
+                        PlayerSession session = sessions.get(player);
+                        if(session.getEditingPlot().isPresent()) {
+                            this.getPropertyService().deletePlot(session.getEditingPlot().get().getId());
+                            session.stopEditing();
                             this.clearScoreboard(player);
                             response = Response.SUCCESS;
                         }else response = Response.FAILURE_WRONG_USAGE;
@@ -323,8 +350,9 @@ public class PrimeProtect {
 
                         //Put names in dictionary for response handling
                         dictionary.put("parent", parentPlot.getDisplayName());
-                        if(playersEditingPlots.containsKey(player)){
-                            Plot plot = playersEditingPlots.get(player);
+                        Optional<Plot> optEditingPlot = sessions.get(player).getEditingPlot();
+                        if(optEditingPlot.isPresent()){
+                            Plot plot = optEditingPlot.get();
                             dictionary.put("plot", plot.getDisplayName());
                             Optional<Plot> optParentPlot2 = plot.getParent();
                             if(optParentPlot2.isPresent()){
@@ -334,8 +362,6 @@ public class PrimeProtect {
                                     //If you are in the current plot at least the rank it takes to claim...
                                     if(parentOwner.containsUser(player.getUniqueId(), Rank.valueOf(permissionConfig.getNode("plot", "claim").getInt()))){
                                         response = plot.addPoint(new PlotPoint(location.getBlockX(), location.getBlockZ()));
-                                        showPlotTicks.put(player, plot);
-                                        playersEditingPlots.put(player, plot);
                                         this.updateScoreboard(plot, player);
                                     }else response = Response.FAILURE_NO_PERMISSION; //Player has not the right permission to claim here.
                                 }else response = Response.FAILURE_WRONG_USAGE; //Only in vacant plots, so there has to be already one.
@@ -359,18 +385,24 @@ public class PrimeProtect {
                         Map<String, String> dictionary = new HashMap<>();
                         dictionary.put("player", player.getName());
                         Response response;
-                        if(playersEditingPlots.containsKey(player)){
-                            Plot plot = playersEditingPlots.get(player);
+                        Optional<Plot> optEditingPlot = sessions.get(player).getEditingPlot();
+                        if(optEditingPlot.isPresent()){
+                            Plot plot = optEditingPlot.get();
                             //Put names in dictionary for response handling
                             dictionary.put("plot", plot.getDisplayName());
                             if (plot.isComplete()) {
-                                if (plot.isValidShape()) {
-                                    this.getPropertyService().savePlot(plot);
-                                    playersEditingPlots.remove(player);
-                                    showPlotTicks.remove(player);
-                                    this.clearScoreboard(player);
-                                    response = Response.SUCCESS;
-                                }else response = Response.FAILURE_INTERSECTS_BORDER; //Closing line would intersect forbidden territory
+                                //Shape check works on copies, big plots are checked async and answered once done.
+                                List<PlotPoint> vertices = new ArrayList<>(plot.getVertices());
+                                List<PlotPoint> parentVertices = plot.getParent().isPresent() ? new ArrayList<>(plot.getParent().get().getVertices()) : Collections.emptyList();
+                                if(vertices.size() + parentVertices.size() <= PlotValidator.SYNC_VERTEX_LIMIT){
+                                    finishPlotSave(player, plot, vertices, PlotValidator.isValidShape(vertices, parentVertices), dictionary);
+                                }else{
+                                    game.getScheduler().createTaskBuilder().async().execute(() -> {
+                                        boolean valid = PlotValidator.isValidShape(vertices, parentVertices);
+                                        game.getScheduler().createTaskBuilder().execute(() -> finishPlotSave(player, plot, vertices, valid, dictionary)).submit(this);
+                                    }).name("PlotValidator").submit(this);
+                                }
+                                return CommandResult.success();
                             }else response = Response.FAILURE_BAD_ALIGNMENT; //Closing line does not align correctly
                         }else response = Response.FAILURE_WRONG_USAGE; //Player has to start the claiming of a new plot first.
                         player.sendMessage(makeResponse(localizationConfig.getNode("plot", "save"), response, dictionary));
@@ -403,14 +435,12 @@ public class PrimeProtect {
                                 User receiver = optReceiverUser.get();
                                 dictionary.put("receiver", receiver.getName());
                                 plot.setOwner(new PlotOwner(receiver.getUniqueId()));
-                                this.getPropertyService().savePlot(plot);
-                                response = Response.SUCCESS;
+                                response = this.getPropertyService().savePlot(plot) ? Response.SUCCESS : Response.FAILURE;
                             }else if(ownerType.equals("group") && optReceiverGroup.isPresent()){
                                 Group receiver = optReceiverGroup.get();
                                 dictionary.put("receiver", receiver.getName());
                                 plot.setOwner(new PlotOwner(receiver));
-                                this.getPropertyService().savePlot(plot);
-                                response = Response.SUCCESS;
+                                response = this.getPropertyService().savePlot(plot) ? Response.SUCCESS : Response.FAILURE;
                             }else{
                                 if(ownerType.equals("player")) response = Response.FAILURE_DATABASE_PLAYER; //Player not found
                                 else response = Response.FAILURE_DATABASE_GROUP; //Group not found
@@ -456,10 +486,10 @@ public class PrimeProtect {
                         Response response;
                         dictionary.put("player", player.getName());
                         dictionary.put("group", name);
-                        Optional<Group> optExistingGroup = this.getPropertyService().getGroup(name);
-                        if(!optExistingGroup.isPresent()){
-                            this.getPropertyService().createGroup(name, player.getUniqueId());
-                            response = Response.SUCCESS;
+                        if(name.length() > Group.MAX_NAME_LENGTH){
+                            response = Response.FAILURE_WRONG_USAGE; //Would not fit into the database
+                        }else if(!this.getPropertyService().getGroup(name).isPresent()){
+                            response = this.getPropertyService().createGroup(name, player.getUniqueId()) != null ? Response.SUCCESS : Response.FAILURE;
                         }else response = Response.FAILURE_DATABASE_GROUP; //Name already in use
                         player.sendMessage(makeResponse(localizationConfig.getNode("group", "new"), response, dictionary));
                     } else if (src instanceof ConsoleSource) {
@@ -488,8 +518,7 @@ public class PrimeProtect {
                             if(optGroup.isPresent()){
                                 Group group = optGroup.get();
                                 if(group.addUser(newMember.getUniqueId(), Rank.MEMBER)){
-                                    response = Response.SUCCESS;
-                                    this.getPropertyService().saveGroup(group);
+                                    response = this.getPropertyService().saveGroup(group) ? Response.SUCCESS : Response.FAILURE;
                                 }else response = Response.FAILURE_ALREADY_THERE; // Player already in group
                             }else response = Response.FAILURE_DATABASE_GROUP; //Could not find group
                         }else response = Response.FAILURE_DATABASE_PLAYER; //Could not find player
@@ -521,8 +550,7 @@ public class PrimeProtect {
                             if(optGroup.isPresent()){
                                 Group group = optGroup.get();
                                 if(group.removeUser(member.getUniqueId())){
-                                    response = Response.SUCCESS;
-                                    this.getPropertyService().saveGroup(group);
+                                    response = this.getPropertyService().saveGroup(group) ? Response.SUCCESS : Response.FAILURE;
                                 }else response = Response.FAILURE_NOT_FOUND; // Player not in group.
                             }else response = Response.FAILURE_DATABASE_GROUP; //Could not find group
                         }else response = Response.FAILURE_DATABASE_PLAYER; //Could not find player
@@ -558,8 +586,7 @@ public class PrimeProtect {
                                 Group group = optGroup.get();
                                 if(Rank.valueOf(rankstring.toUpperCase()) != null){
                                     if(group.rankUser(member.getUniqueId(), Rank.valueOf(rankstring.toUpperCase()))){
-                                        response = Response.SUCCESS;
-                                        this.getPropertyService().saveGroup(group);
+                                        response = this.getPropertyService().saveGroup(group) ? Response.SUCCESS : Response.FAILURE;
                                     }else response = Response.FAILURE_NOT_FOUND; // Player not in group.
                                 }else response = Response.FAILURE; // Could not find rank (should always be the case though
                             }else response = Response.FAILURE_DATABASE_GROUP; //Could not find group
@@ -590,11 +617,27 @@ public class PrimeProtect {
                 .description(Texts.of("PrimeProtect reload"))
                 .executor((src, args) -> {
                     loadConfig();
+                    PermissionCache.clear(); //Ranks and permissions may have changed.
+                    runShowPlotTask();
+                    runMetricsTask();
                     src.sendMessage(Texts.of("Config reloaded."));
                     return CommandResult.success();
                 })
                 .build();
 
+        CommandSpec primeStatsCmd = CommandSpec.builder()
+                .description(Texts.of("PrimeProtect performance stats"))
+                .permission("primeprotect.stats")
+                .executor((src, args) -> {
+                    if(metricsReporter != null){
+                        for(String line : metricsReporter.summarize(true)) src.sendMessage(Texts.of(TextColors.GRAY, line));
+                    }else{
+                        src.sendMessage(Texts.of(TextColors.RED, "Stats are not available yet."));
+                    }
+                    return CommandResult.success();
+                })
+                .build();
+
         CommandSpec primeInfoCmd = CommandSpec.builder()
                 .description(Texts.of("PrimeProtect info"))
                 .executor((src, args) -> {
@@ -620,10 +663,30 @@ public class PrimeProtect {
                 .child(primeGroupCmd, "group")
                 .child(primeReloadCmd, "reload")
                 .child(primeInfoCmd, "info")
+                .child(primeStatsCmd, "stats")
                 .build();
         game.getCommandManager().register(this, primeCmd, "prime");
     }
 
+    //Main thread part of the save command, after the shape of the plot got checked.
+    private void finishPlotSave(Player player, Plot plot, List<PlotPoint> vertices, boolean valid, Map<String, String> dictionary){
+        Optional<PlayerSession> optSession = sessions.find(player.getUniqueId());
+        //Player left during the check, the disconnect already dropped the claim. Don't start a new session for them.
+        if(!optSession.isPresent()) return;
+        Response response;
+        PlayerSession session = optSession.get();
+        if(session.getEditingPlot().orElse(null) != plot || !plot.getVertices().equals(vertices)){
+            response = Response.FAILURE_WRONG_USAGE; //Plot was changed or dropped during the check, has to be saved again.
+        }else if(!valid){
+            response = Response.FAILURE_INTERSECTS_BORDER; //Closing line would intersect forbidden territory
+        }else if(this.getPropertyService().savePlot(plot)){
+            session.stopEditing();
+            this.clearScoreboard(player);
+            response = Response.SUCCESS;
+        }else response = Response.FAILURE; //Server is stopping, keep editing.
+        player.sendMessage(makeResponse(localizationConfig.getNode("plot", "save"), response, dictionary));
+    }
+
     public Text makeResponse(CommentedConfigurationNode responseNode, Response response, Map<String, String> dictionary){
         String responseString;
         Text responseText;
@@ -649,17 +712,31 @@ public class PrimeProtect {
 
     @Listener
     public void onMove(DisplaceEntityEvent.TargetPlayer event){
+        if(!event.getFromTransform().getExtent().getUniqueId().equals(event.getToTransform().getExtent().getUniqueId())){
+            sessions.onWorldChange(event.getTargetEntity());
+        }
         if(!(event.getFromTransform().getPosition().getFloorX() == event.getToTransform().getPosition().getFloorX())
                 || !(event.getFromTransform().getPosition().getFloorZ() == event.getToTransform().getPosition().getFloorZ()) ){
 
-            Plot plotFrom = propertyService.getPlot(event.getFromTransform().getPosition(), event.getTargetEntity().getWorld());
-            Plot plotTo = propertyService.getPlot(event.getToTransform().getPosition(), event.getTargetEntity().getWorld());
+            Player player = event.getTargetEntity();
+            World world = event.getToTransform().getExtent();
+            Vector3d to = event.getToTransform().getPosition();
+            PlayerSession session = sessions.get(player);
+            Optional<PlotArea> optArea = session.getPlotArea();
+            if(optArea.isPresent() && optArea.get().contains(world, to.getFloorX(), to.getFloorZ())){
+                metrics.areaHits.increment();
+                return; //Still inside the same plot.
+            }
+
+            Plot plotFrom = optArea.isPresent() ? optArea.get().getPlot() : propertyService.getPlot(event.getFromTransform().getPosition(), event.getFromTransform().getExtent());
+            PlotArea areaTo = propertyService.getPlotArea(to, world);
+            session.setPlotArea(areaTo);
+            Plot plotTo = areaTo.getPlot();
 
             if(plotFrom.getId() != plotTo.getId()){
                 String message = "" + plotTo.getDisplayName();
-                List<Plot> plotFromParentChain = plotFrom.getParentChain();
                 for(Plot ancestor: plotTo.getParentChain()){
-                    if(plotFromParentChain.contains(ancestor)) break; //If that happens, all further down the line must also be the same, so skip mentioning it.
+                    if(propertyService.isAncestor(ancestor, plotFrom)) break; //If that happens, all further down the line must also be the same, so skip mentioning it.
 
                     message = ancestor.getDisplayName() + " -> " + message;
                 }
@@ -684,13 +761,43 @@ public class PrimeProtect {
             }
         }
 
-        event.getTransactions().stream()
+        List<Transaction<BlockSnapshot>> transactions = event.getTransactions().stream()
                 .filter(transaction -> transaction.getOriginal().getLocation().isPresent())
-                .filter(transaction -> !checkPermission(transaction.getOriginal().getLocation().get(), player))
-                .forEach(transaction -> {
-            transaction.setValid(false);
-            player.sendMessage(Texts.of(TextColors.RED, "You are not allowed to do this."));
-        });
+                .collect(Collectors.toList());
+        if(transactions.isEmpty()) return;
+
+        //Explosions and pistons change lots of blocks at once, so resolve all of them in one go.
+        World world = transactions.get(0).getOriginal().getLocation().get().getExtent();
+        List<Vector3i> positions = transactions.stream()
+                .map(transaction -> transaction.getOriginal().getLocation().get().getBlockPosition())
+                .collect(Collectors.toList());
+        Map<Vector3i, Plot> plots = this.getPropertyService().getPlots(world, positions);
+
+        Map<Integer, Boolean> decisions = new HashMap<>(); //Same plot, same answer.
+        boolean denied = false;
+        for(int i = 0; i < transactions.size(); i++){
+            Plot plot = plots.get(positions.get(i));
+            Boolean allowed = decisions.get(plot.getId());
+            if(allowed == null){
+                allowed = checkPermission(plot, player);
+                decisions.put(plot.getId(), allowed);
+            }
+            if(!allowed){
+                transactions.get(i).setValid(false);
+                denied = true;
+            }
+        }
+        if(denied) player.sendMessage(Texts.of(TextColors.RED, "You are not allowed to do this."));
+    }
+
+    @Listener
+    public void onDisconnect(ClientConnectionEvent.Disconnect event){
+        PermissionCache.invalidatePlayer(event.getTargetEntity().getUniqueId());
+        Optional<PlayerSession> optSession = sessions.onDisconnect(event.getTargetEntity().getUniqueId());
+        if(optSession.isPresent() && optSession.get().getEditingPlot().isPresent()){
+            //Unfinished claim can't be continued after reconnecting, same as leaving with /plot exit.
+            this.getPropertyService().deletePlot(optSession.get().getEditingPlot().get().getId());
+        }
     }
 
     @Listener
@@ -706,7 +813,19 @@ public class PrimeProtect {
 
 
     private boolean checkPermission(Location<World> location, User user){
-        Plot plot = this.getPropertyService().getPlot(location);
+        return checkPermission(this.getPropertyService().getPlot(location), user);
+    }
+
+    private boolean checkPermission(Plot plot, User user){
+        long start = metrics.start();
+        boolean allowed = isAllowed(plot, user);
+        metrics.chargePlot(plot.getId(), metrics.stop(metrics.permissionTime, start));
+        metrics.permissionChecks.increment();
+        if(!allowed) metrics.permissionDenied.increment();
+        return allowed;
+    }
+
+    private boolean isAllowed(Plot plot, User user){
         PlotOwner plotOwner;
         if(plot.getOwner().isPresent()) {
             plotOwner = plot.getOwner().get();
@@ -727,30 +846,30 @@ public class PrimeProtect {
 
     public void runShowPlotTask(){
         if(showPlotTickTask != null) showPlotTickTask.cancel();
+        PlotBorderVisualizer visualizer = new PlotBorderVisualizer(game,
+                mainConfig.getNode("visualizer", "viewRadius").getInt(64),
+                mainConfig.getNode("visualizer", "particlesPerTick").getInt(400));
         Task.Builder taskBuilder = game.getScheduler().createTaskBuilder();
 
         showPlotTickTask = taskBuilder.execute(() -> {
-            for (Map.Entry<Player, Plot> entry : showPlotTicks.entrySet()) {
-                showPlot(entry.getValue(), entry.getKey());
-            }
-        }).interval(200, TimeUnit.MILLISECONDS).name("PlotBorderVisualizer").submit(this);
+            long start = metrics.start();
+            visualizer.tick(sessions.getViewers());
+            metrics.stop(metrics.visualizerTime, start);
+        }).intervalTicks(1).name("PlotBorderVisualizer").submit(this);
     }
 
-    private void showPlot(Plot plot, Player player){
-        ParticleEffect.Builder pe_builder =  game.getRegistry().createBuilder(ParticleEffect.Builder.class);
-        World world = player.getWorld();
-        for(PlotLine plotLine: plot.getBorderBlocksLines()){
-            player.spawnParticles(pe_builder.type(ParticleTypes.FIREWORKS_SPARK).motion(new Vector3d(0,-0.1,0)).count(1).build(), world.getLocation(plotLine.getP1().getX(), player.getLocation().getBlockY()+3, plotLine.getP1().getZ()).getPosition(), 10);
-            double x_m = (plotLine.getP1().getX() + plotLine.getP2().getX())/2;
-            double z_m = (plotLine.getP1().getZ() + plotLine.getP2().getZ())/2;
-            player.spawnParticles(pe_builder.type(ParticleTypes.FIREWORKS_SPARK).motion(new Vector3d(0,-0.1,0)).count(1).build(), world.getLocation(x_m, player.getLocation().getBlockY()+3, z_m).getPosition(), 10);
-        }
-        for(PlotPoint vertex: plot.getVertices()){
-            Location<World> currentLocation = world.getLocation(vertex.getX() + 0.5, player.getLocation().getBlockY()-1.5, vertex.getZ() + 0.5);
-            for(int i = -5; i <= 5; i++){
-                player.spawnParticles(pe_builder.type(ParticleTypes.SMOKE_LARGE).motion(new Vector3d(0,0.01,0)).count(1).build(), currentLocation.getPosition().add(0,i,0), 10);
-            }
-        }
+    public void runMetricsTask(){
+        if(metricsTask != null) metricsTask.cancel();
+        metrics.setTimed(mainConfig.getNode("metrics", "timed").getBoolean(true));
+        if(plotPropertyService == null) return;
+        plotPropertyService.configureTracer();
+        String csv = mainConfig.getNode("metrics", "csv").getString("metrics.csv");
+        Optional<File> csvFile = csv.isEmpty() ? Optional.empty() : Optional.of(new File(defaultConfig.getParentFile(), csv));
+        metricsReporter = new MetricsReporter(metrics, plotPropertyService, logger, csvFile);
+        int interval = mainConfig.getNode("metrics", "dumpInterval").getInt(300);
+        if(interval <= 0) return;
+        Task.Builder taskBuilder = game.getScheduler().createTaskBuilder();
+        metricsTask = taskBuilder.execute(metricsReporter::dump).async().delay(interval, TimeUnit.SECONDS).interval(interval, TimeUnit.SECONDS).name("PrimeProtect-Metrics").submit(this);
     }
 
     public void updateScoreboard(Plot plot, Player player){
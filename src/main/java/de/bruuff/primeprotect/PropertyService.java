@@ -24,18 +24,34 @@
 package de.bruuff.primeprotect;
 
 import com.flowpowered.math.vector.Vector3d;
+import com.flowpowered.math.vector.Vector3i;
 import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface PropertyService {
     Plot getPlot(Location<World> location);
     Plot getPlot(Vector3d position, World world);
+    Map<Vector3i, Plot> getPlots(World world, Collection<Vector3i> positions);
+
+    default PlotArea getPlotArea(Vector3d position, World world){
+        //Without knowledge of the surrounding plots only the block itself is safe.
+        return new PlotArea(getPlot(position, world), world, position.getFloorX(), position.getFloorZ(), position.getFloorX(), position.getFloorZ());
+    }
+
+    //True if ancestor is a parent, grandparent, ... of the plot.
+    default boolean isAncestor(Plot ancestor, Plot plot){
+        return plot.getParentChain().contains(ancestor);
+    }
+
     Plot createPlot(Optional<PlotOwner> optPlotOwner, World world, Plot Parent);
     Optional<Plot> getPlot(int id);
+    //False if the change can't be stored anymore, e.g. while the server is stopping.
     boolean savePlot(Plot plot);
     boolean deletePlot(int id);
 
@@ -0,0 +1,119 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+//Centered interval tree over the x ranges of border lines.
+//A search only descends where the x range of the query reaches, and every line it looks at overlaps it in x, so a long line does not slow down searches elsewhere.
+final class SegmentIndex {
+
+    private final Node root;
+
+    SegmentIndex(List<PlotLine> borderLines) {
+        List<PlotLine> lines = new ArrayList<>(borderLines);
+        lines.sort(Comparator.comparingInt(SegmentIndex::minX));
+        root = build(lines);
+    }
+
+    //Lines have to be sorted by smallest x, the children keep that order.
+    private static Node build(List<PlotLine> lines){
+        if(lines.isEmpty()) return null;
+        //The median line spans the center, so no node stays empty and each child gets at most half of the lines.
+        int center = minX(lines.get(lines.size() / 2));
+        List<PlotLine> left = new ArrayList<>(), spanning = new ArrayList<>(), right = new ArrayList<>();
+        for(PlotLine line : lines){
+            if(maxX(line) < center) left.add(line);
+            else if(minX(line) > center) right.add(line);
+            else spanning.add(line);
+        }
+        PlotLine[] byMaxX = spanning.toArray(new PlotLine[spanning.size()]);
+        Arrays.sort(byMaxX, Comparator.comparingInt(SegmentIndex::maxX).reversed());
+        return new Node(center, spanning.toArray(new PlotLine[spanning.size()]), byMaxX, build(left), build(right));
+    }
+
+    //True if any indexed line crosses the given one, see PlotLine.crosses.
+    public boolean crossesAny(PlotLine line){
+        int lineMinX = minX(line), lineMaxX = maxX(line);
+        int lineMinZ = Math.min(line.getP1().getZ(), line.getP2().getZ());
+        int lineMaxZ = Math.max(line.getP1().getZ(), line.getP2().getZ());
+        Node node = root;
+        List<Node> pending = new ArrayList<>();
+        while(node != null || !pending.isEmpty()){
+            if(node == null) node = pending.remove(pending.size() - 1);
+            if(lineMaxX < node.center){
+                //Only the spanning lines starting early enough reach the query.
+                for(PlotLine other : node.byMinX){
+                    if(minX(other) > lineMaxX) break;
+                    if(crosses(other, line, lineMinZ, lineMaxZ)) return true;
+                }
+                node = node.left;
+            }else if(lineMinX > node.center){
+                for(PlotLine other : node.byMaxX){
+                    if(maxX(other) < lineMinX) break;
+                    if(crosses(other, line, lineMinZ, lineMaxZ)) return true;
+                }
+                node = node.right;
+            }else{
+                //The query spans the center as well, so it overlaps every line here and goes on on both sides.
+                for(PlotLine other : node.byMinX){
+                    if(crosses(other, line, lineMinZ, lineMaxZ)) return true;
+                }
+                if(node.right != null) pending.add(node.right);
+                node = node.left;
+            }
+        }
+        return false;
+    }
+
+    private static boolean crosses(PlotLine other, PlotLine line, int lineMinZ, int lineMaxZ){
+        if(Math.max(other.getP1().getZ(), other.getP2().getZ()) < lineMinZ || Math.min(other.getP1().getZ(), other.getP2().getZ()) > lineMaxZ) return false;
+        return other.crosses(line);
+    }
+
+    private static int minX(PlotLine line){
+        return Math.min(line.getP1().getX(), line.getP2().getX());
+    }
+
+    private static int maxX(PlotLine line){
+        return Math.max(line.getP1().getX(), line.getP2().getX());
+    }
+
+    private static class Node {
+        final int center;
+        final PlotLine[] byMinX, byMaxX; //Lines spanning the center
+        final Node left, right;          //Lines fully left and fully right of the center
+
+        Node(int center, PlotLine[] byMinX, PlotLine[] byMaxX, Node left, Node right) {
+            this.center = center;
+            this.byMinX = byMinX;
+            this.byMaxX = byMaxX;
+            this.left = left;
+            this.right = right;
+        }
+    }
+}
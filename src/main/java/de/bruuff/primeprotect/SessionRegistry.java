@@ -0,0 +1,68 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import org.spongepowered.api.entity.living.player.Player;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Sessions of all players by UUID, so neither reconnects nor scheduler tasks iterating them cause trouble.
+public class SessionRegistry {
+
+    private final Map<UUID, PlayerSession> sessions = new ConcurrentHashMap<>();
+
+    //Creates the session on first use. Keeps the player object current, it changes on reconnect.
+    public PlayerSession get(Player player){
+        PlayerSession session = sessions.computeIfAbsent(player.getUniqueId(), id -> new PlayerSession(player));
+        session.setPlayer(player);
+        return session;
+    }
+
+    public Optional<PlayerSession> find(UUID playerId){
+        return Optional.ofNullable(sessions.get(playerId));
+    }
+
+    public Collection<PlayerSession> getSessions(){
+        return sessions.values();
+    }
+
+    //Sessions with a plot border to draw.
+    public List<PlayerSession> getViewers(){
+        List<PlayerSession> viewers = new ArrayList<>();
+        for(PlayerSession session : sessions.values()){
+            if(session.getShownPlot().isPresent()) viewers.add(session);
+        }
+        return viewers;
+    }
+
+    public Optional<PlayerSession> onDisconnect(UUID playerId){
+        return Optional.ofNullable(sessions.remove(playerId));
+    }
+
+    public void onWorldChange(Player player){
+        PlayerSession session = sessions.get(player.getUniqueId());
+        if(session != null) session.changeWorld();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//Binary form of the plot vertices: the vertex count, then x and z of every vertex as the difference to the one before.
+//All numbers are zigzag varints, so the usual short plot edges take one or two bytes per coordinate.
+final class VertexCodec {
+
+    private VertexCodec() {}
+
+    public static byte[] encode(List<PlotPoint> vertices){
+        byte[] buffer = new byte[5 + vertices.size() * 10];
+        int position = writeVarInt(buffer, 0, vertices.size());
+        int previousX = 0, previousZ = 0;
+        for(PlotPoint vertex : vertices){
+            position = writeVarInt(buffer, position, zigzag(vertex.getX() - previousX));
+            position = writeVarInt(buffer, position, zigzag(vertex.getZ() - previousZ));
+            previousX = vertex.getX();
+            previousZ = vertex.getZ();
+        }
+        return Arrays.copyOf(buffer, position);
+    }
+
+    //Coordinates in one array, x and z alternating. Decoded in a single pass without intermediate objects.
+    public static int[] decodeCoordinates(byte[] data){
+        int[] coordinates = null;
+        int value = 0, shift = 0, read = 0, x = 0, z = 0;
+        for(byte b : data){
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) != 0){
+                shift += 7;
+                continue;
+            }
+            if(coordinates == null){
+                coordinates = new int[value * 2];
+            }else{
+                int delta = (value >>> 1) ^ -(value & 1);
+                if((read & 1) == 0) coordinates[read++] = x += delta;
+                else coordinates[read++] = z += delta;
+            }
+            value = 0;
+            shift = 0;
+        }
+        return coordinates != null ? coordinates : new int[0];
+    }
+
+    public static List<PlotPoint> decode(byte[] data){
+        int[] coordinates = decodeCoordinates(data);
+        List<PlotPoint> vertices = new ArrayList<>(coordinates.length / 2);
+        for(int i = 0; i < coordinates.length; i += 2){
+            vertices.add(new PlotPoint(coordinates[i], coordinates[i + 1]));
+        }
+        return vertices;
+    }
+
+    private static int zigzag(int value){
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int writeVarInt(byte[] buffer, int position, int value){
+        while((value & ~0x7F) != 0){
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+}
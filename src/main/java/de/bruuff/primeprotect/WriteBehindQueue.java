@@ -0,0 +1,393 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+//Collects plot and group saves and writes them in batches on a background thread.
+//Repeated saves of the same plot or group before a flush only write the latest state.
+public class WriteBehindQueue {
+
+    private static final String SQL_SAVE_PLOT = "MERGE INTO primePlot (id, owner, world, vertices, vertexData, centroidX, centroidZ, parent, depth, minX, minZ, maxX, maxZ, area, clockwise, shapeData) KEY (id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
+    private static final String SQL_DELETE_PLOT = "DELETE FROM primePlot WHERE id = ?;";
+    private static final String SQL_SAVE_GROUP = "MERGE INTO primeGroup (name, users, chatColor) KEY (name) VALUES (?, ?, ?);";
+
+    private static final long SLOW_FLUSH_MILLIS = 1000;
+
+    private final Database DB;
+    private final Logger logger;
+    private final ScheduledExecutorService executor;
+
+    private final Map<Integer, PlotRecord> pendingPlots = new ConcurrentHashMap<>();
+    private final Map<String, GroupRecord> pendingGroups = new ConcurrentHashMap<>();
+    private final Map<Integer, PlotRecord> writingPlots = new ConcurrentHashMap<>(); //Taken out of pending, not committed yet
+    private volatile boolean closed;
+
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+    private volatile long flushCount;
+
+    public WriteBehindQueue(Database DB, Logger logger, long flushIntervalMillis) {
+        this.DB = DB;
+        this.logger = logger;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PrimeProtect-Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    //Has to be called on the thread that owns the plot, the row is copied right away.
+    //False once the queue is shut down, the change would never be written.
+    public boolean savePlot(Plot plot){
+        if(closed) return false;
+        pendingPlots.put(plot.getId(), new PlotRecord(plot));
+        return true;
+    }
+
+    public boolean deletePlot(int id){
+        if(closed) return false;
+        pendingPlots.put(id, new PlotRecord(id));
+        return true;
+    }
+
+    public boolean saveGroup(Group group){
+        if(closed) return false;
+        pendingGroups.put(group.getName(), new GroupRecord(group));
+        return true;
+    }
+
+    //True if the plot is saved or deleted but not yet in the database, see getPendingPlot. Only on the thread that owns the plots.
+    public boolean isPlotPending(int id){
+        return getPlotRecord(id) != null;
+    }
+
+    //The saved plot not yet in the database, empty if it is deleted or not pending.
+    public Optional<Plot> getPendingPlot(int id){
+        PlotRecord record = getPlotRecord(id);
+        if(record == null || record.deleted) return Optional.empty();
+        return Optional.of(record.plot);
+    }
+
+    //All saved plots not yet in the database.
+    public List<Plot> getPendingPlots(){
+        List<Plot> plots = new ArrayList<>();
+        Set<Integer> ids = new HashSet<>(pendingPlots.keySet());
+        ids.addAll(writingPlots.keySet());
+        for(int id : ids){
+            Optional<Plot> optPlot = getPendingPlot(id);
+            if(optPlot.isPresent()) plots.add(optPlot.get());
+        }
+        return plots;
+    }
+
+    private PlotRecord getPlotRecord(int id){
+        PlotRecord record = pendingPlots.get(id);
+        return record != null ? record : writingPlots.get(id);
+    }
+
+    //Users of a group that is saved but not yet written, so reads do not go back in time.
+    public Optional<String> getPendingGroupUsers(String name){
+        GroupRecord record = pendingGroups.get(name);
+        if(record == null) return Optional.empty();
+        return Optional.of(record.users);
+    }
+
+    public int getQueueDepth(){
+        return pendingPlots.size() + pendingGroups.size();
+    }
+
+    public long getLastFlushNanos() {
+        return lastFlushNanos;
+    }
+
+    public long getMaxFlushNanos() {
+        return maxFlushNanos;
+    }
+
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    //Stops the background thread and writes everything that is left on the calling thread.
+    public void shutdown(){
+        closed = true;
+        executor.shutdown();
+        try {
+            if(!executor.awaitTermination(30, TimeUnit.SECONDS)) logger.warn("Plot writer did not stop in time.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if(getQueueDepth() > 0) logger.error("Could not write " + getQueueDepth() + " plot and group changes to the database.");
+    }
+
+    private synchronized void flush(){
+        if(pendingPlots.isEmpty() && pendingGroups.isEmpty()) return;
+        long start = System.nanoTime();
+
+        //Take the records out first. Anything saved while we write ends up in the next flush.
+        List<PlotRecord> plots = new ArrayList<>();
+        for(Integer id : pendingPlots.keySet()){
+            //In flight before it leaves pending, so reads always find it in one of both.
+            PlotRecord record = pendingPlots.get(id);
+            if(record == null) continue;
+            writingPlots.put(id, record);
+            pendingPlots.remove(id, record); //A newer save stays pending for the next flush.
+            plots.add(record);
+        }
+        List<GroupRecord> groups = new ArrayList<>();
+        for(String name : pendingGroups.keySet()){
+            GroupRecord record = pendingGroups.remove(name);
+            if(record != null) groups.add(record);
+        }
+
+        final Connection conn = DB.getConnection();
+        if(conn == null){
+            requeue(plots, groups);
+            finishWriting(plots);
+            return;
+        }
+        try {
+            conn.setAutoCommit(false);
+            PreparedStatement savePlot = DB.prepare(conn, SQL_SAVE_PLOT);
+            PreparedStatement deletePlot = DB.prepare(conn, SQL_DELETE_PLOT);
+            PreparedStatement saveGroup = DB.prepare(conn, SQL_SAVE_GROUP);
+            for(PlotRecord record : plots){
+                if(record.deleted){
+                    deletePlot.setInt(1, record.id);
+                    deletePlot.addBatch();
+                }else{
+                    record.bind(savePlot);
+                    savePlot.addBatch();
+                }
+            }
+            for(GroupRecord record : groups){
+                record.bind(saveGroup);
+                saveGroup.addBatch();
+            }
+            savePlot.executeBatch();
+            deletePlot.executeBatch();
+            saveGroup.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            logger.error("SQLException in save, writing the changes one by one.");
+            e.printStackTrace();
+            try {
+                conn.rollback();
+            } catch (SQLException e2) {
+                e2.printStackTrace();
+            }
+            writeSeparately(conn, plots, groups);
+        } finally {
+            try {
+                conn.setAutoCommit(true);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            DB.releaseConnection(conn);
+            finishWriting(plots);
+        }
+
+        lastFlushNanos = System.nanoTime() - start;
+        if(lastFlushNanos > maxFlushNanos) maxFlushNanos = lastFlushNanos;
+        flushCount++;
+        if(lastFlushNanos > TimeUnit.MILLISECONDS.toNanos(SLOW_FLUSH_MILLIS)){
+            logger.warn("Writing " + (plots.size() + groups.size()) + " plot and group changes took " + TimeUnit.NANOSECONDS.toMillis(lastFlushNanos) + "ms.");
+        }
+    }
+
+    //After a failed batch, so a single bad change can't hold back all others forever.
+    //A change that fails on its own while the connection still works will never go through, it is logged and dropped.
+    private void writeSeparately(Connection conn, List<PlotRecord> plots, List<GroupRecord> groups){
+        PreparedStatement savePlot, deletePlot, saveGroup;
+        try {
+            conn.setAutoCommit(true);
+            savePlot = DB.prepare(conn, SQL_SAVE_PLOT);
+            deletePlot = DB.prepare(conn, SQL_DELETE_PLOT);
+            saveGroup = DB.prepare(conn, SQL_SAVE_GROUP);
+            savePlot.clearBatch();
+            deletePlot.clearBatch();
+            saveGroup.clearBatch();
+        } catch (SQLException e) {
+            logger.error("SQLException in save, retrying with next flush.");
+            requeue(plots, groups);
+            return;
+        }
+        for(int i = 0; i < plots.size(); i++){
+            PlotRecord record = plots.get(i);
+            try {
+                if(record.deleted){
+                    deletePlot.setInt(1, record.id);
+                    deletePlot.executeUpdate();
+                }else{
+                    record.bind(savePlot);
+                    savePlot.executeUpdate();
+                }
+            } catch (SQLException e) {
+                if(!isUsable(conn)){
+                    logger.error("Lost the database connection in save, retrying with next flush.");
+                    requeue(plots.subList(i, plots.size()), groups);
+                    return;
+                }
+                logger.error("Dropping the change to plot " + record.id + ", the database refuses it: " + e.getMessage());
+            }
+        }
+        for(int i = 0; i < groups.size(); i++){
+            GroupRecord record = groups.get(i);
+            try {
+                record.bind(saveGroup);
+                saveGroup.executeUpdate();
+            } catch (SQLException e) {
+                if(!isUsable(conn)){
+                    logger.error("Lost the database connection in save, retrying with next flush.");
+                    requeue(Collections.emptyList(), groups.subList(i, groups.size()));
+                    return;
+                }
+                logger.error("Dropping the change to group " + record.name + ", the database refuses it: " + e.getMessage());
+            }
+        }
+    }
+
+    private static boolean isUsable(Connection conn){
+        try {
+            return conn.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    //Committed or back in pending, either way the database or the queue has them again.
+    private void finishWriting(List<PlotRecord> plots){
+        for(PlotRecord record : plots) writingPlots.remove(record.id, record);
+    }
+
+    private void requeue(List<PlotRecord> plots, List<GroupRecord> groups){
+        //Newer saves that came in meanwhile win.
+        for(PlotRecord record : plots) pendingPlots.putIfAbsent(record.id, record);
+        for(GroupRecord record : groups) pendingGroups.putIfAbsent(record.name, record);
+    }
+
+    private static class PlotRecord {
+        final int id;
+        final boolean deleted;
+        final Plot plot; //Live plot for reads on the owning thread, never touched by the writer
+        String owner, world, vertices;
+        byte[] vertexData, shapeData;
+        Double area;
+        Boolean clockwise;
+        Integer centroidX, centroidZ, parent, minX, minZ, maxX, maxZ;
+        int depth;
+
+        PlotRecord(int id) {
+            this.id = id;
+            this.deleted = true;
+            this.plot = null;
+        }
+
+        PlotRecord(Plot plot) {
+            this.id = plot.getId();
+            this.deleted = false;
+            this.plot = plot;
+            if(plot.getOwner().isPresent()) owner = plot.getOwner().get().serialize();
+            world = plot.getWorld().getUniqueId().toString();
+            vertices = plot.getVerticesString();
+            vertexData = VertexCodec.encode(plot.getVertices());
+            if(plot.getCentroid() != null){
+                centroidX = plot.getCentroid().getX();
+                centroidZ = plot.getCentroid().getZ();
+            }
+            if(plot.getParent().isPresent()) parent = plot.getParent().get().getId();
+            depth = plot.getDepth();
+            if(plot.getVertices().size() > 0){
+                minX = plot.getMinX();
+                minZ = plot.getMinZ();
+                maxX = plot.getMaxX();
+                maxZ = plot.getMaxZ();
+                area = plot.getArea();
+                clockwise = plot.isClockwise();
+                shapeData = plot.getShape().toBytes();
+            }
+        }
+
+        void bind(PreparedStatement stmt) throws SQLException {
+            stmt.setInt(1, id);
+            setString(stmt, 2, owner);
+            setString(stmt, 3, world);
+            setString(stmt, 4, vertices);
+            stmt.setBytes(5, vertexData);
+            setInt(stmt, 6, centroidX);
+            setInt(stmt, 7, centroidZ);
+            setInt(stmt, 8, parent);
+            stmt.setInt(9, depth);
+            setInt(stmt, 10, minX);
+            setInt(stmt, 11, minZ);
+            setInt(stmt, 12, maxX);
+            setInt(stmt, 13, maxZ);
+            if(area != null) stmt.setDouble(14, area);
+            else stmt.setNull(14, Types.DOUBLE);
+            if(clockwise != null) stmt.setBoolean(15, clockwise);
+            else stmt.setNull(15, Types.BOOLEAN);
+            stmt.setBytes(16, shapeData);
+        }
+    }
+
+    private static class GroupRecord {
+        final String name, users, chatColor;
+
+        GroupRecord(Group group) {
+            this.name = group.getName();
+            this.users = group.getSerializedUsers();
+            this.chatColor = group.getChatColor().isPresent() ? group.getChatColor().get().toString() : null;
+        }
+
+        void bind(PreparedStatement stmt) throws SQLException {
+            stmt.setString(1, name);
+            stmt.setString(2, users);
+            setString(stmt, 3, chatColor);
+        }
+    }
+
+    private static void setString(PreparedStatement stmt, int index, String value) throws SQLException {
+        if(value != null) stmt.setString(index, value);
+        else stmt.setNull(index, Types.VARCHAR);
+    }
+
+    private static void setInt(PreparedStatement stmt, int index, Integer value) throws SQLException {
+        if(value != null) stmt.setInt(index, value);
+        else stmt.setNull(index, Types.INTEGER);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import org.spongepowered.api.Game;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+//Stands in for the database of the property service and counts the statements the handlers run.
+//Only calls from the simulation thread count, the write queue keeps using the real database on its own thread.
+class CountingDatabase extends Database {
+
+    private final Database database;
+    private final Thread thread;
+    private long statements;
+
+    CountingDatabase(Game game, Database database, Thread thread) {
+        super(game, 1);
+        this.database = database;
+        this.thread = thread;
+    }
+
+    public long getStatements() {
+        return statements;
+    }
+
+    @Override
+    public boolean load() {
+        return database.load();
+    }
+
+    @Override
+    public Connection getConnection() {
+        return database.getConnection();
+    }
+
+    @Override
+    public void releaseConnection(Connection conn) {
+        database.releaseConnection(conn);
+    }
+
+    @Override
+    public PreparedStatement prepare(Connection conn, String query) throws SQLException {
+        if(Thread.currentThread() == thread) statements++;
+        return database.prepare(conn, query);
+    }
+
+    @Override
+    public void close() {
+        database.close();
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import com.flowpowered.math.vector.Vector3d;
+import org.spongepowered.api.block.BlockSnapshot;
+import org.spongepowered.api.command.CommandCallable;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.data.Transaction;
+import org.spongepowered.api.entity.Entity;
+import org.spongepowered.api.entity.Transform;
+import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.event.block.ChangeBlockEvent;
+import org.spongepowered.api.event.cause.Cause;
+import org.spongepowered.api.event.entity.DisplaceEntityEvent;
+import org.spongepowered.api.event.entity.InteractEntityEvent;
+import org.spongepowered.api.service.user.UserStorageService;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+//Replays a stream of player events into the listeners and commands of the plugin, like the main thread of a busy server would.
+//Reports handler latency, allocations and database round trips per event.
+//Run with: gradle simulate -PsimArgs="players=200 events=200000 plots=2000 lookup=index record=events.txt"
+//A recorded stream is replayed with replay=events.txt, use the same plots and seed so the same builders own the same lots.
+public class LoadSimulation {
+
+    private static final int TICKS_PER_SECOND = 20;
+    private static final double WALK_PER_TICK = 0.22; //Blocks, about walking speed
+    private static final int CLAIM_SIZE = 6;
+
+    private final List<Object> online = new ArrayList<>();
+    private final List<SimulatedPlayer> players = new ArrayList<>();
+    private final SyntheticServer server;
+    private final PrimeProtect plugin;
+    private final CountingDatabase database;
+    private final WriteBehindQueue writeQueue;
+    private final int plotCount;
+    private final int size;
+    private final Random random;
+
+    private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final Map<SimulationEvent.Kind, HandlerStats> stats = new EnumMap<>(SimulationEvent.Kind.class);
+    private long allocationOverhead;
+    private long measuredNanos;
+    private int errors;
+
+    public LoadSimulation(Path directory, String lookupMode, int plotCount, int playerCount, long seed) throws Exception {
+        this.plotCount = plotCount;
+        this.random = new Random(seed);
+        this.server = new SyntheticServer(directory){
+            @Override
+            protected Collection<?> getOnlinePlayers() {
+                return online;
+            }
+        };
+        for(int i = 0; i < playerCount; i++){
+            SimulatedPlayer player = new SimulatedPlayer("builder" + i, server.world);
+            players.add(player);
+            online.add(player.player);
+        }
+        server.services.put(UserStorageService.class, SyntheticServer.stub(UserStorageService.class, (method, args) -> {
+            for(SimulatedPlayer player : players){
+                if(player.uuid.equals(args[0]) || player.name.equalsIgnoreCase(String.valueOf(args[0]))) return Optional.of((User) player.player);
+            }
+            return null;
+        }));
+
+        //The plugin reads its config from disk on start, so leave the lookup mode there.
+        Path config = directory.resolve("config").resolve("PrimeProtect.conf");
+        Files.createDirectories(config.getParent());
+        Files.write(config, ("plots { lookup = \"" + lookupMode + "\" }\n").getBytes(StandardCharsets.UTF_8));
+        plugin = server.createPlugin(lookupMode);
+        Field defaultConfig = PrimeProtect.class.getDeclaredField("defaultConfig");
+        defaultConfig.setAccessible(true);
+        defaultConfig.set(plugin, config.toFile());
+        plugin.onStart(null);
+
+        PlotPropertyService service = (PlotPropertyService) plugin.getPropertyService();
+        service.awaitWarmup(1, TimeUnit.MINUTES);
+        //Handlers reach the database through the service only, so counting there leaves the plugin untouched.
+        Field serviceDatabase = PlotPropertyService.class.getDeclaredField("DB");
+        serviceDatabase.setAccessible(true);
+        database = new CountingDatabase(plugin.game, (Database) serviceDatabase.get(service), Thread.currentThread());
+        serviceDatabase.set(service, database);
+        writeQueue = service.getWriteQueue();
+        size = SyntheticServer.claimNestedPlots(service, server.world, plotCount);
+        for(SimulatedPlayer player : players) player.setPosition(random.nextInt(size), random.nextInt(size));
+        giveLots(service);
+
+        for(SimulationEvent.Kind kind : SimulationEvent.Kind.values()) stats.put(kind, new HandlerStats());
+        long overhead = Long.MAX_VALUE;
+        for(int i = 0; i < 100; i++){
+            long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            overhead = Math.min(overhead, threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before);
+        }
+        allocationOverhead = overhead;
+    }
+
+    //Every builder gets a lot of their own to spawn in, so claims and block changes mostly succeed.
+    private void giveLots(PropertyService service){
+        for(SimulatedPlayer player : players){
+            for(int attempt = 0; attempt < 50; attempt++){
+                double x = random.nextInt(size), z = random.nextInt(size);
+                Plot plot = service.getPlot(new Vector3d(x, 64, z), server.world);
+                if(plot.getDepth() == 3 && !plot.getOwner().isPresent()){
+                    plot.setOwner(new PlotOwner(player.uuid));
+                    service.savePlot(plot);
+                    player.setPosition(x + 0.5, z + 0.5);
+                    break;
+                }
+            }
+        }
+    }
+
+    //Builders mostly walk around their lot, place and break blocks, now and then touch an entity or claim a small plot.
+    public List<SimulationEvent> generate(int count){
+        int playerCount = players.size();
+        double[] x = new double[playerCount], z = new double[playerCount], heading = new double[playerCount];
+        int[] claimStep = new int[playerCount], claimX = new int[playerCount], claimZ = new int[playerCount];
+        boolean[] hasGroup = new boolean[playerCount];
+        for(int i = 0; i < playerCount; i++){
+            x[i] = players.get(i).getPosition().getX();
+            z[i] = players.get(i).getPosition().getZ();
+            heading[i] = random.nextDouble() * 2 * Math.PI;
+            claimStep[i] = -1;
+        }
+
+        List<SimulationEvent> events = new ArrayList<>(count);
+        while(events.size() < count){
+            int i = random.nextInt(playerCount);
+            int roll = random.nextInt(100);
+            if(roll < 80){
+                if(random.nextInt(20) == 0) heading[i] = random.nextDouble() * 2 * Math.PI;
+                x[i] = Math.min(size - 1, Math.max(0, x[i] + Math.cos(heading[i]) * WALK_PER_TICK));
+                z[i] = Math.min(size - 1, Math.max(0, z[i] + Math.sin(heading[i]) * WALK_PER_TICK));
+                events.add(SimulationEvent.move(i, x[i], z[i]));
+            }else if(roll < 95){
+                int blocks = random.nextInt(200) == 0 ? 64 : 1; //Now and then a bit of TNT
+                events.add(SimulationEvent.block(i, Math.floor(x[i]) + random.nextInt(9) - 4, Math.floor(z[i]) + random.nextInt(9) - 4, blocks));
+            }else if(roll < 98){
+                events.add(SimulationEvent.interact(i, x[i] + random.nextInt(7) - 3, z[i] + random.nextInt(7) - 3));
+            }else if(claimStep[i] < 0 && random.nextInt(5) == 0){
+                String group = "g" + i;
+                String command = hasGroup[i] ? "group add " + group + " " + players.get(random.nextInt(playerCount)).name : "group new " + group;
+                hasGroup[i] = true;
+                events.add(SimulationEvent.command(i, x[i], z[i], command));
+            }else{
+                //Square claim: new at one corner, add the other three, save.
+                claimStep[i]++;
+                if(claimStep[i] == 0){
+                    claimX[i] = (int) Math.floor(x[i]);
+                    claimZ[i] = (int) Math.floor(z[i]);
+                }
+                int cornerX = claimX[i] + (claimStep[i] == 1 || claimStep[i] == 2 ? CLAIM_SIZE : 0);
+                int cornerZ = claimZ[i] + (claimStep[i] == 2 || claimStep[i] == 3 ? CLAIM_SIZE : 0);
+                String command = claimStep[i] == 0 ? "plot new" : claimStep[i] < 4 ? "plot add" : "plot save";
+                if(claimStep[i] == 4) claimStep[i] = -1;
+                x[i] = cornerX + 0.5;
+                z[i] = cornerZ + 0.5;
+                events.add(SimulationEvent.command(i, x[i], z[i], command));
+            }
+        }
+        return events;
+    }
+
+    public void run(List<SimulationEvent> events, int warmup){
+        CommandCallable command = server.commands.get("prime");
+        long thread = Thread.currentThread().getId();
+        long start = System.nanoTime();
+        for(int i = 0; i < events.size(); i++){
+            if(i == warmup) start = System.nanoTime();
+            SimulationEvent event = events.get(i);
+            Runnable handler = prepare(event, command);
+
+            long statements = database.getStatements();
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long before = System.nanoTime();
+            try {
+                handler.run();
+            } catch (RuntimeException e) {
+                if(errors++ == 0) e.printStackTrace();
+            }
+            long nanos = System.nanoTime() - before;
+            long bytes = threads.getThreadAllocatedBytes(thread) - allocated - allocationOverhead;
+            long dbCalls = database.getStatements() - statements;
+
+            if(i >= warmup) stats.get(event.kind).record(nanos, Math.max(0, bytes), Math.max(0, dbCalls));
+        }
+        measuredNanos = System.nanoTime() - start;
+    }
+
+    //Builds the event outside of the measurement, the returned handler is what gets timed.
+    private Runnable prepare(SimulationEvent event, CommandCallable command){
+        SimulatedPlayer player = players.get(event.player);
+        World world = server.world;
+        Cause cause = Cause.of(player.player);
+        switch (event.kind){
+            case MOVE: {
+                Transform<World> from = transform(world, player.getPosition());
+                player.setPosition(event.x, event.z);
+                Transform<World> to = transform(world, player.getPosition());
+                DisplaceEntityEvent.TargetPlayer move = SyntheticServer.stub(DisplaceEntityEvent.TargetPlayer.class, (method, args) -> {
+                    switch (method.getName()){
+                        case "getTargetEntity": return player.player;
+                        case "getFromTransform": return from;
+                        case "getToTransform": return to;
+                        case "getCause": return cause;
+                    }
+                    return null;
+                });
+                return () -> plugin.onMove(move);
+            }
+            case BLOCK: {
+                List<Transaction<BlockSnapshot>> transactions = new ArrayList<>();
+                int side = (int) Math.ceil(Math.sqrt(event.blocks));
+                for(int b = 0; b < event.blocks; b++){
+                    Location<World> location = new Location<>(world, new Vector3d(event.x + b % side, 64, event.z + b / side));
+                    BlockSnapshot snapshot = SyntheticServer.stub(BlockSnapshot.class, (method, args) ->
+                            method.getName().equals("getLocation") ? Optional.of(location) : null);
+                    transactions.add(new Transaction<>(snapshot, snapshot));
+                }
+                ChangeBlockEvent change = SyntheticServer.stub(ChangeBlockEvent.class, (method, args) -> {
+                    switch (method.getName()){
+                        case "getTransactions": return transactions;
+                        case "getTargetWorld": return world;
+                        case "getCause": return cause;
+                    }
+                    return null;
+                });
+                return () -> plugin.onBlockChange(change);
+            }
+            case INTERACT: {
+                Location<World> location = new Location<>(world, new Vector3d(event.x, 64, event.z));
+                Entity entity = SyntheticServer.stub(Entity.class, (method, args) -> {
+                    switch (method.getName()){
+                        case "getLocation": return location;
+                        case "getWorld": return world;
+                    }
+                    return null;
+                });
+                InteractEntityEvent interact = SyntheticServer.stub(InteractEntityEvent.class, (method, args) -> {
+                    switch (method.getName()){
+                        case "getTargetEntity": return entity;
+                        case "getCause": return cause;
+                    }
+                    return null;
+                });
+                return () -> plugin.onEntityInteract(interact);
+            }
+            default: {
+                player.setPosition(event.x, event.z); //Walked there, the moves in between are left out.
+                return () -> {
+                    try {
+                        command.process(player.player, event.command);
+                    } catch (CommandException e) {
+                        throw new RuntimeException(e);
+                    }
+                };
+            }
+        }
+    }
+
+    private static Transform<World> transform(World world, Vector3d position){
+        @SuppressWarnings("unchecked")
+        Transform<World> transform = SyntheticServer.stub(Transform.class, (method, args) -> {
+            switch (method.getName()){
+                case "getExtent": return world;
+                case "getPosition": return position;
+            }
+            return null;
+        });
+        return transform;
+    }
+
+    public void report(PrintStream out, int warmup){
+        long events = 0, nanos = 0, bytes = 0, dbCalls = 0;
+        out.println(String.format("PrimeProtect load simulation: %d players, %d plots, lookup %s, %d warm-up events",
+                players.size(), plotCount, plugin.mainConfig.getNode("plots", "lookup").getString("index"), warmup));
+        out.println(String.format("%-18s %9s %10s %10s %10s %12s %10s", "handler", "events", "p50 us", "p99 us", "max us", "bytes/event", "db/event"));
+        for(Map.Entry<SimulationEvent.Kind, HandlerStats> entry : stats.entrySet()){
+            HandlerStats handler = entry.getValue();
+            if(handler.count == 0) continue;
+            out.println(String.format("%-18s %9d %10.1f %10.1f %10.1f %12d %10.3f", handlerName(entry.getKey()), handler.count,
+                    handler.percentile(0.5) / 1000.0, handler.percentile(0.99) / 1000.0, handler.percentile(1) / 1000.0,
+                    handler.bytes / handler.count, (double) handler.dbCalls / handler.count));
+            events += handler.count;
+            nanos += handler.totalNanos;
+            bytes += handler.bytes;
+            dbCalls += handler.dbCalls;
+        }
+        if(events == 0) return;
+
+        double seconds = measuredNanos / 1e9;
+        double perEventNanos = (double) nanos / events;
+        double eventsPerSecond = players.size() * TICKS_PER_SECOND; //Every builder doing something every tick
+        out.println(String.format("Replayed %d events in %.1fs, %.0f MB/s allocated, %.3f database round trips per event.",
+                events, seconds, bytes / 1e6 / seconds, (double) dbCalls / events));
+        out.println(String.format("At one event per player and tick (%.0f events/s): %.1f%% of the main thread, %.1f MB/s allocated.",
+                eventsPerSecond, perEventNanos * eventsPerSecond / 1e7, (double) bytes / events * eventsPerSecond / 1e6));
+        out.println(String.format("Write queue: %d flushes, longest %dms. Messages sent to players: %d. Handler errors: %d.",
+                writeQueue.getFlushCount(), TimeUnit.NANOSECONDS.toMillis(writeQueue.getMaxFlushNanos()),
+                players.stream().mapToInt(SimulatedPlayer::getMessages).sum(), errors));
+    }
+
+    private static String handlerName(SimulationEvent.Kind kind){
+        switch (kind){
+            case MOVE: return "onMove";
+            case BLOCK: return "onBlockChange";
+            case INTERACT: return "onEntityInteract";
+            default: return "commands";
+        }
+    }
+
+    public void stop() throws IOException {
+        plugin.onStop(null);
+        server.delete();
+    }
+
+    private static class HandlerStats {
+        private long[] nanos = new long[1024];
+        private int count;
+        private long totalNanos, bytes, dbCalls;
+        private boolean sorted;
+
+        void record(long time, long allocated, long calls){
+            if(count == nanos.length) nanos = Arrays.copyOf(nanos, count * 2);
+            nanos[count++] = time;
+            totalNanos += time;
+            bytes += allocated;
+            dbCalls += calls;
+            sorted = false;
+        }
+
+        long percentile(double fraction){
+            if(!sorted){
+                Arrays.sort(nanos, 0, count);
+                sorted = true;
+            }
+            int index = (int) Math.ceil(fraction * count) - 1;
+            return nanos[Math.max(0, Math.min(count - 1, index))];
+        }
+    }
+
+    public static void main(String[] arguments) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for(String argument : arguments){
+            String[] option = argument.split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "");
+        }
+        int playerCount = Integer.parseInt(options.getOrDefault("players", "200"));
+        int eventCount = Integer.parseInt(options.getOrDefault("events", "200000"));
+        int plotCount = Integer.parseInt(options.getOrDefault("plots", "2000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        String lookupMode = options.getOrDefault("lookup", "index");
+
+        List<SimulationEvent> replay = null;
+        if(options.containsKey("replay")){
+            replay = Files.readAllLines(Paths.get(options.get("replay")), StandardCharsets.UTF_8).stream()
+                    .filter(line -> !line.trim().isEmpty())
+                    .map(SimulationEvent::parse)
+                    .collect(Collectors.toList());
+            for(SimulationEvent event : replay) playerCount = Math.max(playerCount, event.player + 1);
+        }
+
+        LoadSimulation simulation = new LoadSimulation(Files.createTempDirectory("primeprotect-sim"), lookupMode, plotCount, playerCount, seed);
+        try {
+            List<SimulationEvent> events = replay != null ? replay : simulation.generate(eventCount);
+            if(options.containsKey("record")){
+                Files.write(Paths.get(options.get("record")), events.stream().map(SimulationEvent::toLine).collect(Collectors.toList()), StandardCharsets.UTF_8);
+            }
+            int warmup = Integer.parseInt(options.getOrDefault("warmup", String.valueOf(events.size() / 5)));
+            simulation.run(events, warmup);
+            simulation.report(System.out, warmup);
+        } finally {
+            simulation.stop();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import com.flowpowered.math.vector.Vector3d;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.scoreboard.Scoreboard;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+//Stand-in for a connected player. Has every permission, keeps its position and counts the messages it got.
+public class SimulatedPlayer {
+
+    public final UUID uuid;
+    public final String name;
+    public final Player player;
+    private final World world;
+    private final Scoreboard scoreboard = SyntheticServer.deepStub(Scoreboard.class);
+    private volatile Vector3d position = Vector3d.ZERO;
+    private volatile int messages;
+
+    public SimulatedPlayer(String name, World world) {
+        this.uuid = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+        this.name = name;
+        this.world = world;
+        this.player = SyntheticServer.stub(Player.class, (method, args) -> {
+            switch (method.getName()){
+                case "getUniqueId": return uuid;
+                case "getName": return name;
+                case "getIdentifier": return uuid.toString();
+                case "getLocation": return getLocation();
+                case "getWorld": return world;
+                case "getScoreboard": return scoreboard;
+                case "hasPermission": return true;
+                case "isOnline": return true;
+                case "sendMessage": messages++; break;
+            }
+            return null;
+        });
+    }
+
+    public Vector3d getPosition() {
+        return position;
+    }
+
+    public void setPosition(double x, double z) {
+        this.position = new Vector3d(x, 64, z);
+    }
+
+    public Location<World> getLocation() {
+        return new Location<>(world, position);
+    }
+
+    public int getMessages() {
+        return messages;
+    }
+}
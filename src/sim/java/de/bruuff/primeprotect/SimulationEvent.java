@@ -0,0 +1,87 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+//One step of a simulation: the player moves, changes blocks, touches an entity or runs a /prime command at the position.
+//Written as one line per event, so a stream can be recorded and replayed.
+public class SimulationEvent {
+
+    public enum Kind { MOVE, BLOCK, INTERACT, COMMAND }
+
+    public final Kind kind;
+    public final int player;
+    public final double x, z;
+    public final int blocks; //Changed blocks, more than one for explosions
+    public final String command; //Arguments after /prime
+
+    private SimulationEvent(Kind kind, int player, double x, double z, int blocks, String command) {
+        this.kind = kind;
+        this.player = player;
+        this.x = x;
+        this.z = z;
+        this.blocks = blocks;
+        this.command = command;
+    }
+
+    public static SimulationEvent move(int player, double x, double z){
+        return new SimulationEvent(Kind.MOVE, player, x, z, 0, null);
+    }
+
+    public static SimulationEvent block(int player, double x, double z, int blocks){
+        return new SimulationEvent(Kind.BLOCK, player, x, z, blocks, null);
+    }
+
+    public static SimulationEvent interact(int player, double x, double z){
+        return new SimulationEvent(Kind.INTERACT, player, x, z, 0, null);
+    }
+
+    public static SimulationEvent command(int player, double x, double z, String command){
+        return new SimulationEvent(Kind.COMMAND, player, x, z, 0, command);
+    }
+
+    //MOVE 3 100.25 20.5, BLOCK 3 101 22 1, INTERACT 3 99 21, COMMAND 3 100 20 plot add
+    public String toLine(){
+        String line = kind + " " + player + " " + x + " " + z;
+        if(kind == Kind.BLOCK) line += " " + blocks;
+        if(kind == Kind.COMMAND) line += " " + command;
+        return line;
+    }
+
+    public static SimulationEvent parse(String line){
+        String[] parts = line.trim().split(" ", 5);
+        if(parts.length < 4) throw new IllegalArgumentException("Not a simulation event: " + line);
+        Kind kind = Kind.valueOf(parts[0]);
+        int player = Integer.parseInt(parts[1]);
+        double x = Double.parseDouble(parts[2]);
+        double z = Double.parseDouble(parts[3]);
+        switch (kind){
+            case BLOCK: return block(player, x, z, parts.length > 4 ? Integer.parseInt(parts[4]) : 1);
+            case COMMAND:
+                if(parts.length < 5) throw new IllegalArgumentException("Command missing: " + line);
+                return command(player, x, z, parts[4]);
+            case INTERACT: return interact(player, x, z);
+            default: return move(player, x, z);
+        }
+    }
+}
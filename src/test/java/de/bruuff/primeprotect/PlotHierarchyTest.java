@@ -0,0 +1,208 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import org.junit.Test;
+import org.spongepowered.api.world.World;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+//Descent and index lookups on nested plots whose siblings share borders.
+public class PlotHierarchyTest {
+
+    private static final int LAYOUTS = 200;
+
+    private final World world = world(new UUID(0, 1));
+
+    @Test
+    public void descentMatchesIndexOnSharedBorders(){
+        for(long seed = 0; seed < LAYOUTS; seed++){
+            Random random = new Random(seed);
+            List<Plot> plots = new ArrayList<>();
+            split(random, null, 0, 0, 48, 48, new int[]{1 + random.nextInt(1000)}, plots);
+            Collections.shuffle(plots, random); //The hierarchy has to cope with any load order.
+            PlotIndex index = new PlotIndex(new Metrics());
+            for(Plot plot : plots) index.add(plot);
+            Plot wilderness = Plot.wilderness(world);
+            for(int x = -2; x <= 50; x++){
+                for(int z = -2; z <= 50; z++){
+                    Plot expected = indexLookup(index, x, z, wilderness);
+                    assertSame("seed " + seed + " at " + x + ", " + z, expected, index.getHierarchy().getDeepestPlot(world, x, z, wilderness));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void lowerIdWinsOnSharedBorder(){
+        Plot left = rectangle(7, null, 0, 0, 10, 10), right = rectangle(3, null, 10, 0, 20, 10);
+        PlotIndex index = new PlotIndex(new Metrics());
+        index.add(left);
+        index.add(right);
+        Plot wilderness = Plot.wilderness(world);
+        for(int z = 0; z <= 10; z++){
+            assertSame(right, index.getHierarchy().getDeepestPlot(world, 10, z, wilderness));
+            assertSame(right, indexLookup(index, 10, z, wilderness));
+        }
+        assertSame(left, index.getHierarchy().getDeepestPlot(world, 9, 5, wilderness));
+    }
+
+    @Test
+    public void deeperPlotWinsOverNeighbour(){
+        //The child sits on the border its parent shares with a neighbour of lower id.
+        Plot neighbour = rectangle(1, null, 0, 0, 10, 10), parent = rectangle(2, null, 10, 0, 20, 10);
+        Plot child = rectangle(3, parent, 10, 2, 14, 6);
+        PlotIndex index = new PlotIndex(new Metrics());
+        index.add(child);
+        index.add(neighbour);
+        index.add(parent);
+        Plot wilderness = Plot.wilderness(world);
+        assertSame(child, index.getHierarchy().getDeepestPlot(world, 10, 4, wilderness));
+        assertSame(child, indexLookup(index, 10, 4, wilderness));
+        assertSame(neighbour, index.getHierarchy().getDeepestPlot(world, 10, 0, wilderness));
+        assertTrue(index.getHierarchy().isAncestor(parent, child));
+        assertEquals(false, index.getHierarchy().isAncestor(neighbour, child));
+    }
+
+    @Test
+    public void loadLinksChildrenReadBeforeParents(){
+        //Rows come without parents, children first, like the warm-up reads them.
+        Plot city = row(1, 1, 0, 0, 40, 40), district = row(2, 2, 0, 0, 20, 20), lot = row(3, 3, 2, 2, 6, 6);
+        Plot other = row(4, 2, 50, 0, 60, 10);
+        Map<Integer, Integer> parentIds = new HashMap<>();
+        parentIds.put(1, 0);
+        parentIds.put(2, 1);
+        parentIds.put(3, 2);
+        parentIds.put(4, 99);
+        PlotIndex index = new PlotIndex(new Metrics());
+        List<Plot> orphans = index.load(Arrays.asList(lot, other, district, city), parentIds);
+        assertEquals(Collections.singletonList(other), orphans);
+
+        PlotHierarchy hierarchy = index.getHierarchy();
+        assertTrue(hierarchy.isAncestor(city, lot));
+        assertTrue(hierarchy.isAncestor(district, lot));
+        assertTrue(hierarchy.isAncestor(city, district));
+        assertEquals(false, hierarchy.isAncestor(lot, city));
+        assertEquals(Collections.singletonList(district), hierarchy.getChildren(city));
+        assertEquals(Collections.singletonList(lot), hierarchy.getChildren(district));
+        assertEquals(new HashSet<>(Arrays.asList(city, other)), new HashSet<>(hierarchy.getRoots(world)));
+        assertSame(lot, hierarchy.getDeepestPlot(world, 4, 4, Plot.wilderness(world)));
+    }
+
+    @Test
+    public void addingAgainPicksUpParentSetLater(){
+        Plot parent = rectangle(1, null, 0, 0, 20, 20), child = rectangle(2, null, 2, 2, 6, 6);
+        PlotIndex index = new PlotIndex(new Metrics());
+        index.add(child);
+        index.add(parent);
+        assertEquals(false, index.getHierarchy().isAncestor(parent, child));
+        child.setParent(parent);
+        index.add(child);
+        assertTrue(index.getHierarchy().isAncestor(parent, child));
+        assertEquals(Collections.singletonList(child), index.getHierarchy().getChildren(parent));
+    }
+
+    @Test
+    public void adoptedCopyTakesOverChildrenAndParent(){
+        //A parent given away while warming up comes back as a copy built from the database, with its own copy of its parent.
+        Plot city = rectangle(1, null, 0, 0, 40, 40), district = rectangle(2, city, 0, 0, 20, 20), lot = rectangle(3, district, 2, 2, 6, 6);
+        PlotIndex index = new PlotIndex(new Metrics());
+        index.add(city);
+        index.add(district);
+        index.add(lot);
+        Plot cityCopy = rectangle(1, null, 0, 0, 40, 40), districtCopy = rectangle(2, cityCopy, 0, 0, 20, 20);
+        index.adopt(districtCopy);
+        assertSame(districtCopy, lot.getParent().get());
+        assertSame(city, districtCopy.getParent().get());
+        assertSame(districtCopy, index.get(2).get());
+        assertTrue(index.getHierarchy().isAncestor(districtCopy, lot));
+        assertTrue(index.getHierarchy().isAncestor(city, lot));
+    }
+
+    //The index mode of PlotPropertyService: every candidate of the chunk, the one that precedes all others.
+    private Plot indexLookup(PlotIndex index, int x, int z, Plot wilderness){
+        Plot plot = wilderness;
+        for(Plot candidate : index.getCandidates(world, x, z)){
+            if(candidate.contains(x, z) && PlotHierarchy.precedes(candidate, plot)) plot = candidate;
+        }
+        return plot;
+    }
+
+    //Cuts the box into a grid of cells sharing their borders. Some cells become plots and are cut further.
+    private void split(Random random, Plot parent, int minX, int minZ, int maxX, int maxZ, int[] nextId, List<Plot> plots){
+        int columns = 1 + random.nextInt(3), rows = 1 + random.nextInt(3);
+        if(maxX - minX < 2 * columns || maxZ - minZ < 2 * rows) return;
+        int[] xs = cuts(random, minX, maxX, columns), zs = cuts(random, minZ, maxZ, rows);
+        for(int i = 0; i < columns; i++){
+            for(int j = 0; j < rows; j++){
+                if(random.nextInt(4) == 0) continue;
+                //Ids are not in layout order, so neighbours win by id from either side.
+                nextId[0] += 1 + random.nextInt(5);
+                int id = random.nextBoolean() ? nextId[0] : 10000 - nextId[0];
+                Plot plot = rectangle(id, parent, xs[i], zs[j], xs[i + 1], zs[j + 1]);
+                plots.add(plot);
+                if(random.nextInt(3) != 0) split(random, plot, xs[i], zs[j], xs[i + 1], zs[j + 1], nextId, plots);
+            }
+        }
+    }
+
+    private static int[] cuts(Random random, int min, int max, int parts){
+        int[] cuts = new int[parts + 1];
+        cuts[0] = min;
+        cuts[parts] = max;
+        for(int i = 1; i < parts; i++){
+            int low = cuts[i - 1] + 2, high = max - 2 * (parts - i);
+            cuts[i] = low + random.nextInt(high - low + 1);
+        }
+        return cuts;
+    }
+
+    private Plot rectangle(int id, Plot parent, int minX, int minZ, int maxX, int maxZ){
+        List<PlotPoint> vertices = Arrays.asList(new PlotPoint(minX, minZ), new PlotPoint(maxX, minZ), new PlotPoint(maxX, maxZ), new PlotPoint(minX, maxZ));
+        int depth = parent != null ? parent.getDepth() + 1 : 1;
+        return new Plot(id, Optional.empty(), world, vertices, new PlotPoint(0, 0), depth, Optional.ofNullable(parent), minX, minZ, maxX, maxZ);
+    }
+
+    //A plot as the warm-up reads it: depth from the row, parent linked later.
+    private Plot row(int id, int depth, int minX, int minZ, int maxX, int maxZ){
+        List<PlotPoint> vertices = Arrays.asList(new PlotPoint(minX, minZ), new PlotPoint(maxX, minZ), new PlotPoint(maxX, maxZ), new PlotPoint(minX, maxZ));
+        return new Plot(id, Optional.empty(), world, vertices, new PlotPoint(0, 0), depth, Optional.empty(), minX, minZ, maxX, maxZ);
+    }
+
+    private static World world(UUID id){
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class}, (proxy, method, args) -> {
+            switch(method.getName()){
+                case "getUniqueId": return id;
+                case "hashCode": return id.hashCode();
+                case "equals": return proxy == args[0];
+                default: return null;
+            }
+        });
+    }
+}
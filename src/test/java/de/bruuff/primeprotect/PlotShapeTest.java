@@ -0,0 +1,264 @@
+/*
+ * This file is part of the plugin PrimeProtect for Sponge licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2015 Florian Brunzlaff
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bruuff.primeprotect;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+//Random plots with 90 and 45 degree borders, checked point by point against the fan triangulation Plot.contains used before PlotShape.
+public class PlotShapeTest {
+
+    private static final int POLYGONS = 500;
+    private static final int MARGIN = 2; //Points checked around the bounding box
+
+    @Test
+    public void containsMatchesFanTriangulation(){
+        for(long seed = 0; seed < POLYGONS; seed++){
+            List<PlotPoint> vertices = randomPolygon(new Random(seed));
+            PlotShape shape = new PlotShape(vertices);
+            Plot plot = plot(vertices);
+            final long polygonSeed = seed;
+            forEachPoint(vertices, (x, z) -> {
+                boolean expected = fanContains(vertices, new PlotPoint(x, z));
+                String message = "seed " + polygonSeed + " " + vertices + " at " + x + ", " + z;
+                assertEquals(message, expected, shape.contains(x, z));
+                assertEquals(message, expected, plot.contains(x, z));
+            });
+        }
+    }
+
+    @Test
+    public void borderAndVerticesAreInside(){
+        for(long seed = 0; seed < POLYGONS; seed++){
+            List<PlotPoint> vertices = randomPolygon(new Random(seed));
+            PlotShape shape = new PlotShape(vertices);
+            for(int i = 0; i < vertices.size(); i++){
+                PlotPoint from = vertices.get(i), to = vertices.get((i + 1) % vertices.size());
+                int steps = Math.max(Math.abs(to.getX() - from.getX()), Math.abs(to.getZ() - from.getZ()));
+                int dx = Integer.signum(to.getX() - from.getX()), dz = Integer.signum(to.getZ() - from.getZ());
+                for(int step = 0; step <= steps; step++){
+                    int x = from.getX() + step * dx, z = from.getZ() + step * dz;
+                    assertTrue("seed " + seed + " " + vertices + " at " + x + ", " + z, shape.contains(x, z));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void bothWindingsAgree(){
+        for(long seed = 0; seed < POLYGONS; seed++){
+            List<PlotPoint> vertices = randomPolygon(new Random(seed));
+            List<PlotPoint> reversed = new ArrayList<>(vertices);
+            Collections.reverse(reversed);
+            PlotShape shape = new PlotShape(vertices), reversedShape = new PlotShape(reversed);
+            final long polygonSeed = seed;
+            forEachPoint(vertices, (x, z) -> assertEquals("seed " + polygonSeed + " " + vertices + " at " + x + ", " + z, shape.contains(x, z), reversedShape.contains(x, z)));
+        }
+    }
+
+    @Test
+    public void bytesRoundTrip(){
+        for(long seed = 0; seed < POLYGONS; seed++){
+            List<PlotPoint> vertices = randomPolygon(new Random(seed));
+            PlotShape shape = new PlotShape(vertices);
+            byte[] data = shape.toBytes();
+            PlotShape loaded = PlotShape.fromBytes(data);
+            assertArrayEquals("seed " + seed, data, loaded.toBytes());
+            final long polygonSeed = seed;
+            forEachPoint(vertices, (x, z) -> assertEquals("seed " + polygonSeed + " at " + x + ", " + z, shape.contains(x, z), loaded.contains(x, z)));
+        }
+    }
+
+    @Test
+    public void diamond(){
+        List<PlotPoint> vertices = Arrays.asList(new PlotPoint(0, -5), new PlotPoint(5, 0), new PlotPoint(0, 5), new PlotPoint(-5, 0));
+        PlotShape shape = new PlotShape(vertices);
+        forEachPoint(vertices, (x, z) -> assertEquals(x + ", " + z, Math.abs(x) + Math.abs(z) <= 5, shape.contains(x, z)));
+    }
+
+    private interface PointCheck {
+        void check(int x, int z);
+    }
+
+    private static void forEachPoint(List<PlotPoint> vertices, PointCheck check){
+        int minX = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for(PlotPoint vertex : vertices){
+            minX = Math.min(minX, vertex.getX());
+            minZ = Math.min(minZ, vertex.getZ());
+            maxX = Math.max(maxX, vertex.getX());
+            maxZ = Math.max(maxZ, vertex.getZ());
+        }
+        for(int x = minX - MARGIN; x <= maxX + MARGIN; x++){
+            for(int z = minZ - MARGIN; z <= maxZ + MARGIN; z++){
+                check.check(x, z);
+            }
+        }
+    }
+
+    private static Plot plot(List<PlotPoint> vertices){
+        int minX = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for(PlotPoint vertex : vertices){
+            minX = Math.min(minX, vertex.getX());
+            minZ = Math.min(minZ, vertex.getZ());
+            maxX = Math.max(maxX, vertex.getX());
+            maxZ = Math.max(maxZ, vertex.getZ());
+        }
+        return new Plot(1, Optional.empty(), null, vertices, new PlotPoint(0, 0), 1, Optional.empty(), minX, minZ, maxX, maxZ);
+    }
+
+    //Columns on a grid of cell size, neighbours always overlapping, so the outline is simple.
+    //Then some convex corners are cut off at 45 degrees, by less than half a cell so no cut reaches another border.
+    private static List<PlotPoint> randomPolygon(Random random){
+        int cell = 4 + 2 * random.nextInt(3);
+        int columns = 1 + random.nextInt(6);
+        int[] x = new int[columns + 1], bottom = new int[columns], top = new int[columns];
+        for(int i = 0; i < columns; i++){
+            x[i + 1] = x[i] + cell * (1 + random.nextInt(3));
+            do{
+                bottom[i] = cell * random.nextInt(4);
+                top[i] = bottom[i] + cell * (1 + random.nextInt(4));
+            }while(i > 0 && Math.max(bottom[i], bottom[i - 1]) >= Math.min(top[i], top[i - 1]));
+        }
+        List<PlotPoint> outline = new ArrayList<>();
+        for(int i = 0; i < columns; i++){
+            outline.add(new PlotPoint(x[i], bottom[i]));
+            outline.add(new PlotPoint(x[i + 1], bottom[i]));
+        }
+        for(int i = columns - 1; i >= 0; i--){
+            outline.add(new PlotPoint(x[i + 1], top[i]));
+            outline.add(new PlotPoint(x[i], top[i]));
+        }
+        outline = withoutRedundantPoints(outline);
+
+        List<PlotPoint> vertices = new ArrayList<>();
+        int n = outline.size();
+        for(int i = 0; i < n; i++){
+            PlotPoint previous = outline.get((i + n - 1) % n), vertex = outline.get(i), next = outline.get((i + 1) % n);
+            //The outline runs counter clockwise, so convex corners turn left.
+            if(vertex.cross(next, previous) > 0 && random.nextBoolean()){
+                int cut = 1 + random.nextInt(cell / 2 - 1);
+                vertices.add(vertex.add(cut * Integer.signum(previous.getX() - vertex.getX()), cut * Integer.signum(previous.getZ() - vertex.getZ())));
+                vertices.add(vertex.add(cut * Integer.signum(next.getX() - vertex.getX()), cut * Integer.signum(next.getZ() - vertex.getZ())));
+            }else{
+                vertices.add(vertex);
+            }
+        }
+
+        //Mirror, swap the axes and move it somewhere, which also gives both windings.
+        boolean swap = random.nextBoolean(), mirror = random.nextBoolean();
+        int offsetX = random.nextInt(2000) - 1000, offsetZ = random.nextInt(2000) - 1000;
+        List<PlotPoint> placed = new ArrayList<>();
+        for(PlotPoint vertex : vertices){
+            int px = swap ? vertex.getZ() : vertex.getX(), pz = swap ? vertex.getX() : vertex.getZ();
+            if(mirror) px = -px;
+            placed.add(new PlotPoint(px + offsetX, pz + offsetZ));
+        }
+        if(random.nextBoolean()) Collections.reverse(placed);
+        Collections.rotate(placed, random.nextInt(placed.size()));
+        return placed;
+    }
+
+    private static List<PlotPoint> withoutRedundantPoints(List<PlotPoint> outline){
+        List<PlotPoint> points = new ArrayList<>();
+        for(PlotPoint point : outline){
+            if(points.isEmpty() || !points.get(points.size() - 1).equals(point)) points.add(point);
+        }
+        if(points.get(0).equals(points.get(points.size() - 1))) points.remove(points.size() - 1);
+        boolean changed = true;
+        while(changed){
+            changed = false;
+            for(int i = 0; i < points.size(); i++){
+                int n = points.size();
+                if(points.get(i).cross(points.get((i + n - 1) % n), points.get((i + 1) % n)) == 0){
+                    points.remove(i);
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        return points;
+    }
+
+    //Plot.contains before PlotShape: a fan of triangles from the first vertex, inside if in an odd number of them.
+    private static boolean fanContains(List<PlotPoint> vertices, PlotPoint point){
+        List<PlotPoint[]> triangles = new ArrayList<>();
+        for(int i = 0; i < vertices.size(); i++){
+            if(i != vertices.size() - 1){
+                if(onLine(vertices.get(i), vertices.get(i + 1), point)) return true;
+            }else{
+                if(onLine(vertices.get(i), vertices.get(0), point)) return true;
+            }
+            if(i == 0 || i == vertices.size() - 1) continue;
+            triangles.add(new PlotPoint[]{vertices.get(0), vertices.get(i), vertices.get(i + 1)});
+        }
+        double counter = 0;
+        for(PlotPoint[] triangle : triangles){
+            int s1 = (int) Math.signum(cross(point, triangle[0], triangle[1])),
+                s2 = (int) Math.signum(cross(point, triangle[1], triangle[2])),
+                s3 = (int) Math.signum(cross(point, triangle[2], triangle[0]));
+            if(s1 == 0 && s2 == 0 && s3 == 0) continue;
+            if(s1 == s2 && s2 == s3){
+                counter++;
+            }else if(s1 <= 0 && s2 <= 0 && s3 <= 0){
+                counter += 0.5;
+            }else if(s1 >= 0 && s2 >= 0 && s3 >= 0){
+                counter -= 0.5;
+            }
+        }
+        return counter % 2 != 0;
+    }
+
+    private static double cross(PlotPoint point, PlotPoint point1, PlotPoint point2){
+        return (point1.getX() - point.getX()) * (point2.getZ() - point.getZ()) - (point1.getZ() - point.getZ()) * (point2.getX() - point.getX());
+    }
+
+    //PlotLine.contains(point, true) as it was then.
+    private static boolean onLine(PlotPoint p1, PlotPoint p2, PlotPoint point){
+        if(point.equals(p1) || point.equals(p2)) return true;
+        double distX = p2.getX() - p1.getX();
+        double distZ = p2.getZ() - p1.getZ();
+        double dist2X = p2.getX() - point.getX();
+        double dist2Z = p2.getZ() - point.getZ();
+        if(distX != 0){
+            if(dist2X != 0 && Math.signum(dist2X) == Math.signum(distX)){
+                return Math.abs(dist2X) < Math.abs(distX) && distZ / distX == dist2Z / dist2X;
+            }
+        }else if(distZ != 0){
+            if(dist2Z != 0 && Math.signum(dist2Z) == Math.signum(distZ)){
+                return Math.abs(dist2Z) < Math.abs(distZ) && distX / distZ == dist2X / dist2Z;
+            }
+        }
+        return false;
+    }
+}